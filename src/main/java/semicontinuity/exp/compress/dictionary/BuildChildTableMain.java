@@ -0,0 +1,28 @@
+package semicontinuity.exp.compress.dictionary;
+
+import java.io.File;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.suffixarrays.ChildTable;
+
+/**
+ * Builds child table for the given LCP array file, for top-down traversal of lcp-intervals.
+ */
+public class BuildChildTableMain {
+    private static final Logger logger = LogManager.getLogger(BuildChildTableMain.class);
+
+    public static void main(String[] args) {
+        new BuildChildTableMain().run(new File(args[0]));
+    }
+
+    private void run(File folder) {
+        logger.info("Generating");
+        LongArray lcp = Helper.openCompactLongs(new File(folder, "lcp"));
+        LongArray cld = Helper.createFiveByteLongs(new File(folder, "cld"), lcp.length());
+        ChildTable.build(lcp, cld);
+        lcp.close();
+        cld.close();
+    }
+}
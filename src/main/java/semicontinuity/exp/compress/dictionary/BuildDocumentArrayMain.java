@@ -0,0 +1,43 @@
+package semicontinuity.exp.compress.dictionary;
+
+import java.io.File;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.RankSelectBitVector;
+import semicontinuity.exp.suffixarrays.DocumentArray;
+
+/**
+ * Turns enhanced suffix array of data, that consists of documents (records) separated with -Ddocuments.separator
+ * byte (10, i.e. new line, by default), into generalized suffix array:
+ * builds document array da (document of every suffix in sa), and lcp-documents: lcp, capped so that common prefixes
+ * do not extend over separators (lcp itself is kept for other steps).
+ */
+public class BuildDocumentArrayMain {
+    private static final Logger logger = LogManager.getLogger(BuildDocumentArrayMain.class);
+    private static final long SEPARATOR = Integer.getInteger("documents.separator", 10);
+
+    public static void main(String[] args) {
+        new BuildDocumentArrayMain().run(new File(args[0]));
+    }
+
+    private void run(File folder) {
+        logger.info("Generating");
+        LongArray data = Helper.openBytes(new File(folder, "data"));
+        LongArray sa = Helper.openLongs(new File(folder, "sa"));
+        RankSelectBitVector separators = DocumentArray.separators(data, SEPARATOR);
+        data.close();
+
+        LongArray da = Helper.createFiveByteLongs(new File(folder, "da"), sa.length());
+        logger.info("Documents: " + DocumentArray.build(sa, separators, da));
+        da.close();
+
+        logger.info("Capping LCP");
+        LongArray lcp = Helper.openCompactLongs(new File(folder, "lcp"));
+        Helper.createCompactLongs(new File(folder, "lcp-documents"), DocumentArray.cappedLcp(sa, lcp, separators));
+        lcp.close();
+        separators.close();
+        sa.close();
+    }
+}
@@ -0,0 +1,39 @@
+package semicontinuity.exp.compress.dictionary;
+
+import java.io.File;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+
+import semicontinuity.exp.suffixarrays.PrefixFingerprints;
+
+/**
+ * Builds prefix fingerprints of data, for substring equality and LCE queries.
+ * Every n-th prefix fingerprint is stored, n is given by -Dfingerprints.sample (default 16).
+ * They are computed on -Dfingerprints.threads threads (all available processors by default, unless a buffer pool
+ * is used, that is not thread-safe).
+ */
+public class BuildFingerprintsMain {
+    private static final Logger logger = LogManager.getLogger(BuildFingerprintsMain.class);
+    private static final int SAMPLE_RATE = Integer.getInteger("fingerprints.sample", 16);
+    private static final int THREADS = Integer.getInteger("fingerprints.threads",
+            System.getProperty("buffer.pool.bytes") == null ? Runtime.getRuntime().availableProcessors() : 1);
+
+    public static void main(String[] args) {
+        new BuildFingerprintsMain().run(new File(args[0]));
+    }
+
+    private void run(File folder) {
+        logger.info("Generating");
+        ByteArrayAsLongArrayAdapter input = Helper.openBytes(new File(folder, "data"));
+        LongArray storage = Helper.createLongs(
+                new File(folder, "fingerprints"), PrefixFingerprints.storageLength(input.length(), SAMPLE_RATE));
+        PrefixFingerprints fingerprints = PrefixFingerprints.build(
+                input, storage, SAMPLE_RATE, System.nanoTime(), THREADS);
+        fingerprints.close();
+        input.close();
+    }
+}
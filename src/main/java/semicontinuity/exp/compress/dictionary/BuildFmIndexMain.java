@@ -0,0 +1,32 @@
+package semicontinuity.exp.compress.dictionary;
+
+import java.io.File;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+
+import semicontinuity.exp.suffixarrays.FmIndex;
+
+/**
+ * Builds FM-index of data, for counting (and locating) substrings without sa and data.
+ * Suffix array is sampled at every n-th text position, n is given by -Dfm.sample (default 32);
+ * with -Dfm.sample=0, only counting is supported.
+ */
+public class BuildFmIndexMain {
+    private static final Logger logger = LogManager.getLogger(BuildFmIndexMain.class);
+    private static final int SAMPLE_RATE = Integer.getInteger("fm.sample", 32);
+
+    public static void main(String[] args) {
+        new BuildFmIndexMain().run(new File(args[0]));
+    }
+
+    private void run(File folder) {
+        logger.info("Generating");
+        ByteArrayAsLongArrayAdapter input = Helper.openBytes(new File(folder, "data"));
+        FmIndex index = FmIndex.build(input, input.length(), SAMPLE_RATE, Helper.fmIndexStorage(folder));
+        index.close();
+        input.close();
+    }
+}
@@ -6,35 +6,52 @@ import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import semicontinuity.exp.offheap.BatchedAccess;
 import semicontinuity.exp.offheap.LongArray;
 import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
 
 import semicontinuity.exp.suffixarrays.BottomUpTraversal;
-import semicontinuity.exp.suffixarrays.LcpInterval;
+import semicontinuity.exp.suffixarrays.ParallelBottomUpTraversal;
 
 /**
  * Builds frequent intervals dataset.
  * Finds all LCP intervals that represent at least 2 suffixes, with a minimum common length 4.
  * Writes LCP intervals to file, together with rating assigned to each interval.
+ * <p>
+ * Scores are computed with sequential traversal (they depend on the order of intervals);
+ * qualifying intervals are reported with parallel traversal on -Dintervals.threads threads
+ * (all available processors by default, unless a buffer pool is used, that is not thread-safe),
+ * so their order in the file is not defined.
+ * <p>
+ * With -Dintervals.documents=true, rating uses the number of distinct documents with the substring
+ * instead of the number of its occurrences (sequential traversal, with da and lcp-documents
+ * from {@link BuildDocumentArrayMain}).
  */
 public class BuildFrequentIntervalsMain {
     private static final Logger logger = LogManager.getLogger(BuildFrequentIntervalsMain.class);
+    private static final int THREADS = Integer.getInteger("intervals.threads",
+            System.getProperty("buffer.pool.bytes") == null ? Runtime.getRuntime().availableProcessors() : 1);
+    private static final boolean DOCUMENTS = Boolean.getBoolean("intervals.documents");
 
     public static void main(String[] args) throws IOException {
         new BuildFrequentIntervalsMain().run(new File(args[0]));
     }
 
     static class Solver implements Closeable {
+        private static final int BATCH_SIZE = 1 << 16;
+
         private final LongArray sa;
         private final LongArray rsufa;
         private final LongArray score;
-        private final Consumer<LcpInterval> sink;
+        private final BottomUpTraversal.DocumentVisitor sink;
+        private final BatchedAccess batch = new BatchedAccess(BATCH_SIZE);
+        private final long[] positions = new long[BATCH_SIZE];
+        private final long[] indices = new long[BATCH_SIZE];
 
-        Solver(LongArray sa, LongArray rsufa, Consumer<LcpInterval> sink) {
+        Solver(LongArray sa, LongArray rsufa, BottomUpTraversal.DocumentVisitor sink) {
             this.sa = sa;
             this.rsufa = rsufa;
             this.score = new OffheapByteArrayAsFiveByteLongArrayLsb(rsufa.length());
@@ -42,41 +59,53 @@ public class BuildFrequentIntervalsMain {
         }
 
         // it seems that intervals with width 1 are not processed
-        private void computeScores(LcpInterval interval) {
-            if (interval.value >= 4) {
+        private void computeScores(long value, long from, long to, long children) {
+            if (value >= 4) {
                 // Scan the LCP interval and get the maximum score from scores array
                 long maxScore = 0;
-                for (long i = interval.from; i <= interval.to; i++) {
+                for (long i = from; i <= to; i++) {
                     if (score.get(i) > maxScore) {
                         maxScore = score.get(i);
                     }
                 }
 
-                long intervalScore = interval.value * (interval.to - interval.from + 1);
+                long intervalScore = value * (to - from + 1);
 
                 // if it is not a top interval
-                if (interval.from != 0 && interval.to != score.length()) {
+                if (from != 0 && to != score.length()) {
                     long fillScore = Math.max(intervalScore, maxScore);
-                    for (long i = interval.from; i <= interval.to; i++) {
+                    for (long i = from; i <= to; i++) {
                         this.score.set(i, fillScore);
                     }
 
                     // coloring direct child: indicate that longer string is in dictionary
-                    for (long i = interval.from; i <= interval.to; i++) {
-                        long index = rsufa.get(sa.get(i) + 1);
-                        if (this.score.get(index) < fillScore) {
-                            this.score.set(index, fillScore);
+                    for (long i = from; i <= to; i += BATCH_SIZE) {
+                        int count = (int) Math.min(BATCH_SIZE, to - i + 1);
+                        for (int j = 0; j < count; j++) {
+                            positions[j] = sa.get(i + j) + 1;
+                        }
+                        batch.gather(rsufa, positions, indices, count);
+                        for (int j = 0; j < count; j++) {
+                            long index = indices[j];
+                            if (this.score.get(index) < fillScore) {
+                                this.score.set(index, fillScore);
+                            }
                         }
                     }
                 }
             }
         }
 
-        private void reportQualifyingIntervals(LcpInterval interval) {
-            if (interval.value >= 4) {
-                long intervalScore = interval.value * (interval.to - interval.from + 1);
-                if (intervalScore >= score.get(interval.to)) {
-                    sink.accept(interval);
+        // every suffix is a separate document
+        private void reportQualifyingIntervals(long value, long from, long to, long children) {
+            reportQualifyingIntervals(value, from, to, children, to - from + 1);
+        }
+
+        private void reportQualifyingIntervals(long value, long from, long to, long children, long documents) {
+            if (value >= 4) {
+                long intervalScore = value * (to - from + 1);
+                if (intervalScore >= score.get(to)) {
+                    sink.visit(value, from, to, children, documents);
                 }
             }
         }
@@ -92,24 +121,26 @@ public class BuildFrequentIntervalsMain {
 
         LongArray sa = Helper.openLongs(new File(folder, "sa"));
         LongArray rsa = Helper.openLongs(new File(folder, "rsa"));
-        LongArray lcp = Helper.openLongs(new File(folder, "lcp"));
+        LongArray lcp = Helper.openCompactLongs(new File(folder, DOCUMENTS ? "lcp-documents" : "lcp"));
         File outputFile = new File(folder, "frequent-intervals");
 
         try (BufferedOutputStream bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(outputFile))) {
             try (DataOutputStream dataOutputStream = new DataOutputStream(bufferedOutputStream)) {
                 BottomUpTraversal traversal = new BottomUpTraversal(sa, lcp);
 
-                Consumer<LcpInterval> sink = interval -> {
+                BottomUpTraversal.DocumentVisitor sink = (value, from, to, children, documents) -> {
                     // text position:long; length:int; rating:float
-                    if (interval.value <= Integer.MAX_VALUE && interval.value >= 4) {
-                        long textPosition = sa.get(interval.to);
+                    if (value <= Integer.MAX_VALUE && value >= 4) {
+                        long textPosition = sa.get(to);
                         try {
-                            dataOutputStream.writeLong(textPosition);
-                            dataOutputStream.writeInt((int) interval.value);
-                            dataOutputStream.writeFloat(
-                                    (float) (interval.to - interval.from + 1)
-                                            * (float) (interval.value - 3) / (float) interval.value
-                            );
+                            synchronized (dataOutputStream) {
+                                dataOutputStream.writeLong(textPosition);
+                                dataOutputStream.writeInt((int) value);
+                                dataOutputStream.writeFloat(
+                                        (float) documents
+                                                * (float) (value - 3) / (float) value
+                                );
+                            }
                         } catch (IOException e) {
                             throw new RuntimeException(e);
                         }
@@ -118,7 +149,15 @@ public class BuildFrequentIntervalsMain {
 
                 Solver solver = new Solver(sa, rsa, sink);
                 traversal.run(solver::computeScores);
-                traversal.run(solver::reportQualifyingIntervals);
+                if (DOCUMENTS) {
+                    LongArray da = Helper.openFiveByteLongs(new File(folder, "da"));
+                    traversal.run(da, documentCount(da), solver::reportQualifyingIntervals);
+                    da.close();
+                } else {
+                    try (ParallelBottomUpTraversal parallelTraversal = new ParallelBottomUpTraversal(THREADS)) {
+                        parallelTraversal.run(sa, lcp, solver::reportQualifyingIntervals);
+                    }
+                }
                 solver.close();
             }
         }
@@ -127,4 +166,12 @@ public class BuildFrequentIntervalsMain {
         rsa.close();
         lcp.close();
     }
+
+    private static long documentCount(LongArray da) {
+        long max = 0;
+        for (long i = 0; i < da.length(); i++) {
+            max = Math.max(max, da.get(i));
+        }
+        return max + 1;
+    }
 }
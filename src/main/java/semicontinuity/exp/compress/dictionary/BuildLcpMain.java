@@ -1,39 +1,94 @@
 package semicontinuity.exp.compress.dictionary;
 
 import java.io.File;
+import java.util.function.Function;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.CompactLongArray;
 import semicontinuity.exp.offheap.LongArray;
 import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
 
+import semicontinuity.exp.suffixarrays.ParallelLcp;
 import semicontinuity.exp.suffixarrays.SuffixArrays;
 
 /**
- * Builds LCP array from data and suffix array.
+ * Builds LCP array from data and suffix array, and saves it as {@link CompactLongArray}.
+ * With -Dlcp.algorithm=phi, the permuted LCP algorithm is used instead of Kasai's;
+ * with -Dlcp.semi.external=true (implies phi), only data is held in memory,
+ * while Φ array and LCP array are kept in scratch files.
+ * With -Dlcp.threads greater than 1 (all available processors by default, unless a buffer pool is used,
+ * that is not thread-safe), parallel permuted LCP algorithm is used.
  */
 public class BuildLcpMain {
     private static final Logger logger = LogManager.getLogger(BuildRsaMain.class);
+    private static final boolean SEMI_EXTERNAL = Boolean.getBoolean("lcp.semi.external");
+    private static final int THREADS = Integer.getInteger("lcp.threads",
+            System.getProperty("buffer.pool.bytes") == null ? Runtime.getRuntime().availableProcessors() : 1);
+    private static final boolean PHI = SEMI_EXTERNAL || "phi".equals(System.getProperty("lcp.algorithm", "kasai"));
 
     public static void main(String[] args) {
         new BuildLcpMain().run(new File(args[0]));
     }
 
     private void run(File folder) {
+        if (SEMI_EXTERNAL) {
+            runSemiExternal(folder);
+            return;
+        }
         logger.info("Generating");
         ByteArrayAsLongArrayAdapter input = Helper.openBytes(new File(folder, "data"));
         LongArray sa = Helper.openLongs(new File(folder, "sa"));
         LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(input.length());
-        SuffixArrays.computeLCP(input, 0, input.length(), sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        if (THREADS > 1) {
+            try (ParallelLcp parallelLcp = new ParallelLcp(THREADS)) {
+                parallelLcp.computeLCP(input, 0, input.length(), sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+            }
+        } else if (PHI) {
+            SuffixArrays.computeLcpPhi(input, 0, input.length(), sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        } else {
+            SuffixArrays.computeLCP(input, 0, input.length(), sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        }
         input.close();
         sa.close();
 
         logger.info("Saving");
-        LongArray lcpPersistent = Helper.createLongs(new File(folder, "lcp"), input.length());
-        Helper.copyLongs(lcp, lcpPersistent);
+        Helper.createCompactLongs(new File(folder, "lcp"), lcp);
         lcp.close();
-        lcpPersistent.close();
+    }
+
+    private void runSemiExternal(File folder) {
+        logger.info("Loading data");
+        ByteArrayAsLongArrayAdapter data = Helper.openBytes(new File(folder, "data"));
+        long n = data.length();
+        ByteArrayAsLongArrayAdapter input = new ByteArrayAsLongArrayAdapter(n);
+        for (long i = 0; i < n; i++) {
+            input.set(i, data.get(i));
+        }
+        data.close();
+
+        logger.info("Generating");
+        File phi = new File(folder, "phi.tmp");
+        File lcpFile = new File(folder, "lcp.tmp");
+        LongArray sa = Helper.openLongs(new File(folder, "sa"));
+        LongArray lcp = Helper.createFiveByteLongs(lcpFile, n);
+        Function<Long, LongArray> phiFactory = length -> Helper.createFiveByteLongs(phi, length);
+        if (THREADS > 1) {
+            try (ParallelLcp parallelLcp = new ParallelLcp(THREADS)) {
+                parallelLcp.computeLCP(input, 0, n, sa, lcp, phiFactory);
+            }
+        } else {
+            SuffixArrays.computeLcpPhi(input, 0, n, sa, lcp, phiFactory);
+        }
+        input.close();
+        sa.close();
+        Helper.deleteLongs(phi);
+
+        logger.info("Saving");
+        Helper.createCompactLongs(new File(folder, "lcp"), lcp);
+        lcp.close();
+        Helper.deleteLongs(lcpFile);
     }
 }
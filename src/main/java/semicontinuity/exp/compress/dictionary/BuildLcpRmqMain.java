@@ -0,0 +1,38 @@
+package semicontinuity.exp.compress.dictionary;
+
+import java.io.File;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+import semicontinuity.exp.suffixarrays.LcpRmq;
+
+/**
+ * Builds range minimum query structure over LCP array, for LCE queries of arbitrary suffixes (with rsa),
+ * on -Dlcp.rmq.threads threads (all available processors by default).
+ */
+public class BuildLcpRmqMain {
+    private static final Logger logger = LogManager.getLogger(BuildLcpRmqMain.class);
+    private static final int THREADS = Integer.getInteger("lcp.rmq.threads", Runtime.getRuntime().availableProcessors());
+
+    public static void main(String[] args) {
+        new BuildLcpRmqMain().run(new File(args[0]));
+    }
+
+    private void run(File folder) {
+        logger.info("Generating");
+        LongArray lcp = Helper.openCompactLongs(new File(folder, "lcp"));
+        long length = LcpRmq.storageLength(lcp.length());
+        // built in memory (it is small), as persistent storage may not allow concurrent writes
+        LongArray storage = new OffheapByteArrayAsLongArrayLsb(length);
+        LcpRmq.build(lcp, storage, THREADS);
+        lcp.close();
+
+        logger.info("Saving");
+        LongArray persistent = Helper.createLongs(new File(folder, "lcp-rmq"), length);
+        Helper.copyLongs(storage, persistent);
+        storage.close();
+        persistent.close();
+    }
+}
@@ -4,6 +4,7 @@ import java.io.File;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import semicontinuity.exp.offheap.BatchedAccess;
 import semicontinuity.exp.offheap.LongArray;
 import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
 
@@ -22,9 +23,7 @@ public class BuildRsaMain {
         LongArray sa = Helper.openLongs(new File(folder, "sa"));
         LongArray rsa = new OffheapByteArrayAsFiveByteLongArrayLsb(sa.length());
 
-        for (long i = 0; i < sa.length(); i++) {
-            rsa.set(sa.get(i), i);
-        }
+        new BatchedAccess(BatchedAccess.DEFAULT_BATCH_SIZE).invert(sa, rsa, sa.length());
         sa.close();
 
         logger.info("Saving");
@@ -1,32 +1,82 @@
 package semicontinuity.exp.compress.dictionary;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
 import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArray;
 import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.offheap.PackedText;
 
+import semicontinuity.exp.suffixarrays.ByteSais;
+import semicontinuity.exp.suffixarrays.ExternalSuffixArray;
+import semicontinuity.exp.suffixarrays.ParallelSais;
 import semicontinuity.exp.suffixarrays.Sais;
 
 /**
  * Builds suffix array for the given binary data file.
+ * Sorting uses -Dsa.threads threads (all available processors by default).
+ * With one thread, or if data is too short to be split into blocks for all threads, sequential {@link ByteSais}
+ * is used, that accesses memory directly, and is several times faster than other implementations on one thread.
+ * <p>
+ * If data and suffix array do not fit in -Dsa.ram.bytes (physical memory by default),
+ * suffix array is built in external memory, with scratch files in -Dsa.scratch.dir (data folder by default).
+ * <p>
+ * With -Dsa.lcp=true (in memory only), LCP array is induced together with suffix array (sequentially),
+ * and saved to lcp, so that {@link BuildLcpMain} is not needed.
  */
 public class BuildSaMain {
     private static final Logger logger = LogManager.getLogger(BuildSaMain.class);
+    private static final int THREADS = Integer.getInteger("sa.threads", Runtime.getRuntime().availableProcessors());
+    private static final long RAM_BYTES = Long.getLong("sa.ram.bytes", physicalMemory());
+    private static final String SCRATCH_DIR = System.getProperty("sa.scratch.dir");
+    private static final boolean LCP = Boolean.getBoolean("sa.lcp");
+    // data, 5-byte suffix array, types and buckets
+    private static final int IN_MEMORY_BYTES_PER_SYMBOL = 7;
+    // 5-byte LCP array
+    private static final int LCP_BYTES_PER_SYMBOL = 5;
 
     public static void main(String[] args) {
         new BuildSaMain().run(new File(args[0]));
     }
 
     private void run(File folder) {
+        File data = new File(folder, "data");
+        if (data.length() * (IN_MEMORY_BYTES_PER_SYMBOL + (LCP ? LCP_BYTES_PER_SYMBOL : 0)) > RAM_BYTES) {
+            runExternal(folder, data);
+            return;
+        }
+
         logger.info("Generating");
 
         ByteArrayAsLongArrayAdapter input = Helper.openBytes(new File(folder, "data"));
-        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(input.length());
+        OffheapByteArray saBuffer = new OffheapByteArray(input.length() * 5);
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(saBuffer);
 
-        Sais.suffixsort(input, sa, input.length(), 256);
+        int alphabetSize = PackedText.alphabetSize(input);
+        logger.info("Alphabet size: " + alphabetSize);
+        LongArray lcp = LCP ? new OffheapByteArrayAsFiveByteLongArrayLsb(input.length()) : null;
+        try (ParallelSais sais = new ParallelSais(THREADS)) {
+            if (LCP) {
+                PackedText text = PackedText.of(input);
+                Sais.suffixsort(text, sa, lcp, input.length(), text.alphabetSize());
+                text.close();
+            } else if (input.bytes() instanceof OffheapByteArray
+                    && (THREADS == 1 || input.length() <= (long) THREADS * ParallelSais.DEFAULT_BLOCK_SIZE)) {
+                // specialized sequential kernel: parallel one does not pay off, without enough blocks to pipeline
+                ByteSais.suffixsort((OffheapByteArray) input.bytes(), input.length(), saBuffer, 5);
+            } else if (PackedText.bitsFor(alphabetSize) < 8) {
+                // remapping preserves symbol order, so the suffix array is the same
+                PackedText text = PackedText.of(input);
+                sais.suffixsort(text, sa, input.length(), text.alphabetSize());
+                text.close();
+            } else {
+                sais.suffixsort(input, sa, input.length(), 256);
+            }
+        }
 
         for (int i = 0; i < 11; i++) {
             System.out.println("sa " + i + '=' + sa.get(i) + " --> "
@@ -45,5 +95,24 @@ public class BuildSaMain {
         Helper.copyLongs(sa, saPersistent);
         sa.close();
         saPersistent.close();
+        if (lcp != null) {
+            Helper.createCompactLongs(new File(folder, "lcp"), lcp);
+            lcp.close();
+        }
+    }
+
+    private void runExternal(File folder, File data) {
+        logger.info("Generating in external memory" + (LCP ? ", without LCP" : ""));
+        File scratchDir = SCRATCH_DIR != null ? new File(SCRATCH_DIR) : folder;
+        // sorted runs are on heap
+        long budget = Math.min(RAM_BYTES, Runtime.getRuntime().maxMemory() / 2);
+        LongArray sa = Helper.createLongs(new File(folder, "sa"), data.length());
+        new ExternalSuffixArray(budget, scratchDir).build(data, sa);
+        sa.close();
+    }
+
+    private static long physicalMemory() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getTotalMemorySize();
     }
 }
@@ -0,0 +1,76 @@
+package semicontinuity.exp.compress.dictionary;
+
+import java.io.File;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.suffixarrays.PrefixFingerprints;
+import semicontinuity.exp.suffixarrays.SparseSuffixArray;
+
+/**
+ * Builds sparse suffix array of data in 'sparse-sa', and its LCP array in 'sparse-lcp':
+ * for suffixes, that start after every -Dsparse.separator byte (and at 0), if it is set,
+ * or else at every -Dsparse.rate-th position (8 by default).
+ * Suffixes at separators are compared with 'fingerprints', built by {@link BuildFingerprintsMain}, if they exist.
+ * Sampled suffixes are sorted as strings of k-grams, that are sorted in -Dsparse.ram.bytes of heap
+ * (half of the maximal heap size by default), or else externally, in -Dsparse.scratch.dir (data folder by default).
+ */
+public class BuildSparseSaMain {
+    private static final Logger logger = LogManager.getLogger(BuildSparseSaMain.class);
+    private static final Integer SEPARATOR = Integer.getInteger("sparse.separator");
+    private static final int RATE = Integer.getInteger("sparse.rate", 8);
+    private static final long RAM_BYTES = Long.getLong("sparse.ram.bytes", Runtime.getRuntime().maxMemory() / 2);
+    private static final String SCRATCH_DIR = System.getProperty("sparse.scratch.dir");
+
+    public static void main(String[] args) {
+        new BuildSparseSaMain().run(new File(args[0]));
+    }
+
+    private void run(File folder) {
+        LongArray data = Helper.openBytes(new File(folder, "data"));
+        long n = data.length();
+        long m = SEPARATOR != null ? boundaries(data, null) : SparseSuffixArray.sampleCount(n, RATE);
+        logger.info("Suffixes: " + m);
+
+        LongArray sa = Helper.createFiveByteLongs(new File(folder, "sparse-sa"), m);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(m);
+        logger.info("Generating");
+        if (SEPARATOR != null) {
+            boundaries(data, sa);
+            File fingerprintsFile = new File(folder, "fingerprints");
+            if (Helper.existsLongs(fingerprintsFile)) {
+                try (PrefixFingerprints fingerprints =
+                             new PrefixFingerprints(data, Helper.openLongs(fingerprintsFile))) {
+                    SparseSuffixArray.sort(data, n, sa, m, lcp, fingerprints);
+                }
+            } else {
+                SparseSuffixArray.sort(data, n, sa, m, lcp);
+            }
+        } else {
+            File scratchDir = SCRATCH_DIR != null ? new File(SCRATCH_DIR) : folder;
+            SparseSuffixArray.sample(data, n, RATE, sa, lcp, RAM_BYTES, scratchDir);
+        }
+        sa.close();
+        data.close();
+        Helper.createCompactLongs(new File(folder, "sparse-lcp"), lcp);
+        lcp.close();
+    }
+
+    // positions, that follow separators, into positions (if not null); returns their number
+    private static long boundaries(LongArray data, LongArray positions) {
+        long n = data.length();
+        long separator = SEPARATOR;
+        long m = 0;
+        for (long p = 0; p < n; p++) {
+            if (p == 0 || data.get(p - 1) == separator) {
+                if (positions != null) {
+                    positions.set(m, p);
+                }
+                m++;
+            }
+        }
+        return m;
+    }
+}
@@ -4,14 +4,42 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
+import semicontinuity.exp.offheap.BufferPool;
 import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.CompactLongArray;
 import semicontinuity.exp.offheap.LongArray;
 import semicontinuity.exp.offheap.MappedByteArray;
+import semicontinuity.exp.offheap.OffheapBitVector;
+import semicontinuity.exp.offheap.OffheapByteArray;
 import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
 import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+import semicontinuity.exp.offheap.PagedFile;
+import semicontinuity.exp.offheap.PagedLongArray;
+import semicontinuity.exp.offheap.RankSelectBitVector;
+import semicontinuity.exp.offheap.RrrBitVector;
+import semicontinuity.exp.offheap.StripedLongArray;
+import semicontinuity.exp.suffixarrays.FmIndex;
 
 class Helper {
+    /**
+     * If set, long arrays are striped over files in these directories (separated with File.pathSeparator),
+     * instead of being stored in a single file, so that I/O is spread over several devices.
+     */
+    private static final String STRIPE_DIRS = System.getProperty("stripe.dirs");
+    /**
+     * Number of items in stripe extent; extent size in bytes should be a multiple of the page size.
+     */
+    private static final long STRIPE_EXTENT = Long.getLong("stripe.extent", 1L << 20);
+    /**
+     * If buffer.pool.bytes is set, long arrays are accessed with positional (direct, where supported) I/O
+     * through a buffer pool of that size, instead of being memory-mapped.
+     */
+    private static final BufferPool BUFFER_POOL = bufferPool();
+
     static void copyLongs(LongArray from, LongArray to) {
         for (long i = 0; i < from.length(); i++) {
             to.set(i, from.get(i));
@@ -23,23 +51,162 @@ class Helper {
     }
 
 
-    static OffheapByteArrayAsFiveByteLongArrayLsb openFiveByteLongs(File file) {
-        return new OffheapByteArrayAsFiveByteLongArrayLsb(mapped(file, FileChannel.MapMode.READ_ONLY));
+    static LongArray openFiveByteLongs(File file) {
+        return openLongs(file, 5, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+    }
+
+    static LongArray openLongs(File file) {
+        return openLongs(file, 8, OffheapByteArrayAsLongArrayLsb::new);
+    }
+
+
+    static LongArray createFiveByteLongs(File file, long size) {
+        return createLongs(file, size, 5, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+    }
+
+    static LongArray createLongs(File file, long size) {
+        return createLongs(file, size, 8, OffheapByteArrayAsLongArrayLsb::new);
+    }
+
+    private static LongArray openLongs(File file, int unitLength, Function<OffheapByteArray, LongArray> wrapper) {
+        Function<File, LongArray> opener = BUFFER_POOL != null
+                ? f -> new PagedLongArray(PagedFile.open(BUFFER_POOL, f, true), unitLength)
+                : f -> wrapper.apply(mapped(f, FileChannel.MapMode.READ_ONLY));
+        if (STRIPE_DIRS == null) {
+            return opener.apply(file);
+        }
+        File[] files = stripeFiles(file);
+        long size = 0;
+        for (File f : files) {
+            if (!f.isFile()) {
+                throw new IllegalStateException("Missing stripe " + f);
+            }
+            size += f.length() / unitLength;
+        }
+        LongArray[] stripes = new LongArray[files.length];
+        for (int i = 0; i < files.length; i++) {
+            long stripeSize = StripedLongArray.stripeLength(size, STRIPE_EXTENT, files.length, i);
+            if (files[i].length() != stripeSize * unitLength) {
+                throw new IllegalStateException(
+                        "Stripe " + files[i] + " has " + files[i].length() + " bytes, "
+                        + "expected " + stripeSize * unitLength + " (different -Dstripe.extent?)");
+            }
+            if (stripeSize > 0) {
+                stripes[i] = opener.apply(files[i]);
+            }
+        }
+        return new StripedLongArray(stripes, STRIPE_EXTENT);
+    }
+
+    private static LongArray createLongs(
+            File file, long size, int unitLength, Function<OffheapByteArray, LongArray> wrapper)
+    {
+        BiFunction<File, Long, LongArray> creator = BUFFER_POOL != null
+                ? (f, n) -> new PagedLongArray(new PagedFile(BUFFER_POOL, f, n * unitLength, true, true), unitLength)
+                : (f, n) -> {
+                    createLongsFile(f, n, unitLength);
+                    return n == 0 ? null : wrapper.apply(mapped(f, FileChannel.MapMode.READ_WRITE));
+                };
+        if (STRIPE_DIRS == null) {
+            return creator.apply(file, size);
+        }
+        File[] files = stripeFiles(file);
+        LongArray[] stripes = new LongArray[files.length];
+        for (int i = 0; i < files.length; i++) {
+            long stripeSize = StripedLongArray.stripeLength(size, STRIPE_EXTENT, files.length, i);
+            stripes[i] = creator.apply(files[i], stripeSize);
+        }
+        return new StripedLongArray(stripes, STRIPE_EXTENT);
+    }
+
+    /**
+     * Deletes a file, created with createLongs or createFiveByteLongs (all its stripes, if arrays are striped).
+     */
+    static void deleteLongs(File file) {
+        for (File f : STRIPE_DIRS == null ? new File[] {file} : stripeFiles(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+        }
+    }
+
+    /**
+     * @return true if a file, created with createLongs or createFiveByteLongs, exists (any of its stripes,
+     * if arrays are striped: if others are missing, opening it fails)
+     */
+    static boolean existsLongs(File file) {
+        for (File f : STRIPE_DIRS == null ? new File[] {file} : stripeFiles(file)) {
+            if (f.exists()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // file with the same name in every stripe directory: name of the file, prefixed with the name of its folder
+    // and hash of the folder path, so that arrays with the same name in different folders do not collide
+    private static File[] stripeFiles(File file) {
+        Path folder = file.toPath().toAbsolutePath().normalize().getParent();
+        String name = folder.getFileName() + "-" + Integer.toHexString(folder.toString().hashCode())
+                + "-" + file.getName();
+        String[] dirs = STRIPE_DIRS.split(File.pathSeparator);
+        File[] files = new File[dirs.length];
+        for (int i = 0; i < dirs.length; i++) {
+            files[i] = new File(dirs[i], name);
+        }
+        return files;
     }
 
-    static OffheapByteArrayAsLongArrayLsb openLongs(File file) {
-        return new OffheapByteArrayAsLongArrayLsb(mapped(file, FileChannel.MapMode.READ_ONLY));
+    /**
+     * Compact arrays (e.g. lcp) are always memory-mapped, as they are small.
+     */
+    static CompactLongArray openCompactLongs(File file) {
+        return new CompactLongArray(mapped(file, FileChannel.MapMode.READ_ONLY));
     }
 
+    static void createCompactLongs(File file, LongArray values) {
+        createLongsFile(file, CompactLongArray.storageSize(values), 1L);
+        CompactLongArray.write(values, mapped(file, FileChannel.MapMode.READ_WRITE)).close();
+    }
+
+    static RankSelectBitVector openBits(File file) {
+        return new RankSelectBitVector(new OffheapBitVector(mapped(file, FileChannel.MapMode.READ_ONLY)));
+    }
+
+    static OffheapBitVector createBits(File file, long length) {
+        createLongsFile(file, OffheapBitVector.storageSize(length), 1L);
+        return new OffheapBitVector(OffheapBitVector.init(mapped(file, FileChannel.MapMode.READ_WRITE), length));
+    }
+
+    /**
+     * FM-index in files "fm-" + name: long arrays have 5-byte items, words of compressed bit vectors have 8 bytes.
+     */
+    static FmIndex.Storage fmIndexStorage(File folder) {
+        return new FmIndex.Storage() {
+            @Override
+            public LongArray longs(String name, long length) {
+                return createFiveByteLongs(new File(folder, "fm-" + name), length);
+            }
+
+            @Override
+            public LongArray words(String name, long length) {
+                return createLongs(new File(folder, "fm-" + name), length);
+            }
+        };
+    }
 
-    static OffheapByteArrayAsFiveByteLongArrayLsb createFiveByteLongs(File file, long size) {
-        createLongsFile(file, size, 5L);
-        return new OffheapByteArrayAsFiveByteLongArrayLsb(mapped(file, FileChannel.MapMode.READ_WRITE));
+    static FmIndex openFmIndex(File folder) {
+        File sampled = new File(folder, "fm-sampled");
+        boolean located = existsLongs(sampled);
+        return new FmIndex(
+                openFiveByteLongs(new File(folder, "fm-meta")),
+                new RrrBitVector(openLongs(new File(folder, "fm-bwt"))),
+                located ? new RrrBitVector(openLongs(sampled)) : null,
+                located ? openFiveByteLongs(new File(folder, "fm-samples")) : null);
     }
 
-    static OffheapByteArrayAsLongArrayLsb createLongs(File file, long size) {
-        createLongsFile(file, size, 8L);
-        return new OffheapByteArrayAsLongArrayLsb(mapped(file, FileChannel.MapMode.READ_WRITE));
+    private static BufferPool bufferPool() {
+        Long bytes = Long.getLong("buffer.pool.bytes");
+        return bytes == null ? null : new BufferPool(Integer.getInteger("buffer.pool.page", 1 << 20), bytes);
     }
 
     private static MappedByteArray mapped(File file, FileChannel.MapMode readWrite) {
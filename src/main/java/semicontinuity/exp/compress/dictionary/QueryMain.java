@@ -0,0 +1,66 @@
+package semicontinuity.exp.compress.dictionary;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.suffixarrays.FmIndex;
+import semicontinuity.exp.suffixarrays.SuffixArraySearch;
+
+/**
+ * Counts occurrences of patterns (UTF-8 strings from command line after the folder, or lines of standard input)
+ * in 'data', with 'sa', or, with -Dquery.fm=true, with FM-index (built by {@link BuildFmIndexMain}).
+ * Prints pattern, count, and text positions of at most -Dquery.limit occurrences (10 by default), tab-separated.
+ */
+public class QueryMain {
+    private static final int LIMIT = Integer.getInteger("query.limit", 10);
+    private static final boolean FM = Boolean.getBoolean("query.fm");
+
+    public static void main(String[] args) throws IOException {
+        List<String> patterns = new ArrayList<>(Arrays.asList(args).subList(1, args.length));
+        if (patterns.isEmpty()) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                patterns.add(line);
+            }
+        }
+        new QueryMain().run(new File(args[0]), patterns);
+    }
+
+    private void run(File folder, List<String> patterns) {
+        byte[][] bytes = patterns.stream().map(p -> p.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        if (FM) {
+            try (FmIndex index = Helper.openFmIndex(folder)) {
+                for (int i = 0; i < bytes.length; i++) {
+                    long count = index.count(bytes[i]);
+                    print(patterns.get(i), count, index.isSampled() ? index.locate(bytes[i], LIMIT) : new long[0]);
+                }
+            }
+            return;
+        }
+
+        LongArray data = Helper.openBytes(new File(folder, "data"));
+        LongArray sa = Helper.openLongs(new File(folder, "sa"));
+        SuffixArraySearch search = new SuffixArraySearch(data, sa);
+        long[][] ranges = search.ranges(bytes);
+        for (int i = 0; i < bytes.length; i++) {
+            print(patterns.get(i), ranges[i][1] - ranges[i][0], search.locate(ranges[i], LIMIT));
+        }
+        sa.close();
+        data.close();
+    }
+
+    private static void print(String pattern, long count, long[] positions) {
+        StringBuilder line = new StringBuilder(pattern).append('\t').append(count);
+        for (long position : positions) {
+            line.append('\t').append(position);
+        }
+        System.out.println(line);
+    }
+}
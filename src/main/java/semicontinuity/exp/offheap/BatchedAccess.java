@@ -0,0 +1,111 @@
+package semicontinuity.exp.offheap;
+
+import java.util.Arrays;
+
+/**
+ * Batched random access (gather/scatter) with locality-aware reordering.
+ * Positions of a batch are sorted (together with their slots in the batch) before access,
+ * so that a batch touches every page once and in ascending order:
+ * for memory-mapped arrays, random page faults become near-sequential reads, with kernel read-ahead;
+ * for in-memory arrays, hardware prefetchers can follow the ascending stream.
+ * Scatter preserves the order of writes to the same position.
+ * <p>
+ * Positions must be less than 2^40 (sorting packs a position and its slot into one long,
+ * that is compared as unsigned).
+ * Instances hold a scratch buffer and are not thread-safe.
+ */
+public class BatchedAccess {
+    private static final int SLOT_BITS = 24;
+    private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+    public static final int MAX_BATCH_SIZE = 1 << SLOT_BITS;
+    public static final int DEFAULT_BATCH_SIZE = 1 << 20;
+
+    private final long[] order;
+    private final long[] sortedIdx;
+    private final long[] sortedValues;
+    private final byte[] sortedBytes;
+
+    @SuppressWarnings("WeakerAccess")
+    public BatchedAccess(int batchSize) {
+        if (batchSize <= 0 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(String.valueOf(batchSize));
+        }
+        this.order = new long[batchSize];
+        this.sortedIdx = new long[batchSize];
+        this.sortedValues = new long[batchSize];
+        this.sortedBytes = new byte[batchSize];
+    }
+
+    /**
+     * out[i] = array.get(idx[i]), for i in [0, count).
+     */
+    public void gather(LongArray array, long[] idx, long[] out, int count) {
+        sort(idx, count);
+        array.gather(sortedIdx, sortedValues, count);
+        for (int i = 0; i < count; i++) {
+            out[(int) (order[i] & SLOT_MASK)] = sortedValues[i];
+        }
+    }
+
+    /**
+     * array.set(idx[i], values[i]), for i in [0, count).
+     */
+    public void scatter(LongArray array, long[] idx, long[] values, int count) {
+        sort(idx, count);
+        for (int i = 0; i < count; i++) {
+            sortedValues[i] = values[(int) (order[i] & SLOT_MASK)];
+        }
+        array.scatter(sortedIdx, sortedValues, count);
+    }
+
+    /**
+     * out[i] = array.get(idx[i]), for i in [0, count).
+     */
+    public void gather(ByteArray array, long[] idx, byte[] out, int count) {
+        sort(idx, count);
+        array.gather(sortedIdx, sortedBytes, count);
+        for (int i = 0; i < count; i++) {
+            out[(int) (order[i] & SLOT_MASK)] = sortedBytes[i];
+        }
+    }
+
+    /**
+     * array.set(idx[i], values[i]), for i in [0, count).
+     */
+    public void scatter(ByteArray array, long[] idx, byte[] values, int count) {
+        sort(idx, count);
+        for (int i = 0; i < count; i++) {
+            sortedBytes[i] = values[(int) (order[i] & SLOT_MASK)];
+        }
+        array.scatter(sortedIdx, sortedBytes, count);
+    }
+
+    /**
+     * Computes inverse permutation: inverse.set(permutation.get(i), i) for i in [0, length),
+     * e.g. rank (reverse suffix) array from suffix array.
+     * Reads permutation sequentially and writes inverse in sorted batches.
+     */
+    public void invert(LongArray permutation, LongArray inverse, long length) {
+        long[] idx = new long[order.length];
+        long[] values = new long[order.length];
+        for (long i = 0; i < length; i += order.length) {
+            int count = (int) Math.min(order.length, length - i);
+            for (int j = 0; j < count; j++) {
+                idx[j] = permutation.get(i + j);
+                values[j] = i + j;
+            }
+            scatter(inverse, idx, values, count);
+        }
+    }
+
+    private void sort(long[] idx, int count) {
+        // with the sign bit flipped, signed order of keys is unsigned order of positions
+        for (int i = 0; i < count; i++) {
+            order[i] = ((idx[i] << SLOT_BITS) | i) ^ Long.MIN_VALUE;
+        }
+        Arrays.sort(order, 0, count);
+        for (int i = 0; i < count; i++) {
+            sortedIdx[i] = (order[i] ^ Long.MIN_VALUE) >>> SLOT_BITS;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package semicontinuity.exp.offheap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchedAccessTest {
+
+    @Test
+    public void gatherScatter() {
+        OffheapByteArrayAsFiveByteLongArrayLsb a = new OffheapByteArrayAsFiveByteLongArrayLsb(10);
+        BatchedAccess batch = new BatchedAccess(4);
+
+        batch.scatter(a, new long[]{7, 2, 7, 0}, new long[]{70, 20, 71, 1}, 4);
+        long[] out = new long[3];
+        batch.gather(a, new long[]{7, 0, 2}, out, 3);
+        Assert.assertArrayEquals(new long[]{71, 1, 20}, out);
+        a.close();
+    }
+
+    @Test
+    public void gatherScatterBytes() {
+        OffheapByteArray a = new OffheapByteArray(10);
+        BatchedAccess batch = new BatchedAccess(4);
+
+        batch.scatter(a, new long[]{7, 2, 7, 0}, new byte[]{70, 20, 71, 1}, 4);
+        byte[] out = new byte[3];
+        batch.gather(a, new long[]{7, 0, 2}, out, 3);
+        Assert.assertArrayEquals(new byte[]{71, 1, 20}, out);
+        a.close();
+    }
+
+    @Test
+    public void gatherInAscendingOrderOfLargePositions() {
+        long[] accessed = new long[3];
+        LongArray a = new LongArray() {
+            private int count;
+
+            @Override
+            public long get(long pos) {
+                accessed[count++] = pos;
+                return pos + 1;
+            }
+
+            @Override
+            public void set(long pos, long value) {
+            }
+
+            @Override
+            public long length() {
+                return 1L << 40;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        long[] idx = {(1L << 39) + 5, 3, (1L << 40) - 1};
+        long[] out = new long[3];
+        new BatchedAccess(4).gather(a, idx, out, 3);
+        Assert.assertArrayEquals(new long[]{3, (1L << 39) + 5, (1L << 40) - 1}, accessed);
+        Assert.assertArrayEquals(new long[]{(1L << 39) + 6, 4, 1L << 40}, out);
+    }
+
+    @Test
+    public void invert() {
+        long[] permutation = {3, 0, 4, 1, 2};
+        OffheapByteArrayAsLongArrayLsb p = new OffheapByteArrayAsLongArrayLsb(permutation.length);
+        for (int i = 0; i < permutation.length; i++) {
+            p.set(i, permutation[i]);
+        }
+        OffheapByteArrayAsLongArrayLsb inverse = new OffheapByteArrayAsLongArrayLsb(permutation.length);
+        new BatchedAccess(2).invert(p, inverse, permutation.length);
+        for (int i = 0; i < permutation.length; i++) {
+            Assert.assertEquals(i, inverse.get(permutation[i]));
+        }
+        p.close();
+        inverse.close();
+    }
+}
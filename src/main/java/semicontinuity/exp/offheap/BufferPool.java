@@ -0,0 +1,214 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size pool of page frames for {@link PagedFile}s, with a hard cap on memory.
+ * Frames are replaced with CLOCK (second chance) policy; pinned frames are never evicted,
+ * dirty frames are written back to their file on eviction.
+ * Frame buffers are aligned, so that they can be used with direct I/O.
+ * Hits and misses count page lookups; accesses to the page, that a file keeps pinned, are not counted.
+ * <p>
+ * Not thread-safe: a pool and its files should be used from one thread.
+ */
+public class BufferPool implements Closeable {
+    static final int ALIGNMENT = 4096;
+    private static final long ADDRESS_OFFSET = addressOffset();
+
+    private final int pageSize;
+    private final int frames;
+
+    private final ByteBuffer[] buffers;
+    private final long[] addresses;
+    private final PagedFile[] owners;
+    private final long[] pages;
+    private final int[] pins;
+    private final boolean[] referenced;
+    private final boolean[] dirty;
+    private int hand;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long writes;
+
+    /**
+     * @param pageSize page size in bytes, multiple of 4096
+     * @param maxBytes memory cap; the pool has maxBytes / pageSize frames
+     */
+    @SuppressWarnings("WeakerAccess")
+    public BufferPool(int pageSize, long maxBytes) {
+        if (pageSize <= 0 || pageSize % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("Page size must be a multiple of " + ALIGNMENT + ": " + pageSize);
+        }
+        long frames = maxBytes / pageSize;
+        if (frames < 1 || frames > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.valueOf(maxBytes));
+        }
+        this.pageSize = pageSize;
+        this.frames = (int) frames;
+        this.buffers = new ByteBuffer[this.frames];
+        this.addresses = new long[this.frames];
+        this.owners = new PagedFile[this.frames];
+        this.pages = new long[this.frames];
+        this.pins = new int[this.frames];
+        this.referenced = new boolean[this.frames];
+        this.dirty = new boolean[this.frames];
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    public long writes() {
+        return writes;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{frames=" + frames + ", pageSize=" + pageSize
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", writes=" + writes + '}';
+    }
+
+    /**
+     * Makes the page of the file resident and pins it.
+     * @return frame index
+     */
+    int pin(PagedFile file, int page, boolean write) {
+        int frame = file.frameOf(page);
+        if (frame >= 0) {
+            hits++;
+        } else {
+            misses++;
+            frame = victim();
+            file.read(page, buffers[frame]);
+            owners[frame] = file;
+            pages[frame] = page;
+            file.setFrame(page, frame);
+        }
+        pins[frame]++;
+        referenced[frame] = true;
+        if (write) {
+            dirty[frame] = true;
+        }
+        return frame;
+    }
+
+    void unpin(int frame) {
+        pins[frame]--;
+    }
+
+    void markDirty(int frame) {
+        dirty[frame] = true;
+    }
+
+    long address(int frame) {
+        return addresses[frame];
+    }
+
+    /**
+     * Writes back dirty frames of the file.
+     */
+    void flush(PagedFile file) {
+        for (int frame = 0; frame < frames; frame++) {
+            if (owners[frame] == file && dirty[frame]) {
+                writeBack(frame);
+            }
+        }
+    }
+
+    /**
+     * Writes back dirty frames of the file and releases all its frames.
+     */
+    void release(PagedFile file) {
+        for (int frame = 0; frame < frames; frame++) {
+            if (owners[frame] == file) {
+                if (pins[frame] != 0) {
+                    throw new IllegalStateException("Page " + pages[frame] + " is pinned");
+                }
+                drop(frame);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int frame = 0; frame < frames; frame++) {
+            if (owners[frame] != null) {
+                drop(frame);
+            }
+            buffers[frame] = null;
+        }
+    }
+
+
+    private int victim() {
+        for (int scanned = 0; scanned < 2 * frames + 1; scanned++) {
+            int frame = hand;
+            hand = hand + 1 == frames ? 0 : hand + 1;
+            if (buffers[frame] == null) {
+                allocate(frame);
+                return frame;
+            }
+            if (owners[frame] == null) {
+                return frame;
+            }
+            if (pins[frame] != 0) {
+                continue;
+            }
+            if (referenced[frame]) {
+                referenced[frame] = false;
+                continue;
+            }
+            evictions++;
+            drop(frame);
+            return frame;
+        }
+        throw new IllegalStateException("All " + frames + " frames are pinned");
+    }
+
+    private void drop(int frame) {
+        if (dirty[frame]) {
+            writeBack(frame);
+        }
+        owners[frame].setFrame((int) pages[frame], -1);
+        owners[frame] = null;
+        referenced[frame] = false;
+    }
+
+    private void writeBack(int frame) {
+        writes++;
+        owners[frame].write((int) pages[frame], buffers[frame]);
+        dirty[frame] = false;
+    }
+
+    private void allocate(int frame) {
+        ByteBuffer aligned = ByteBuffer.allocateDirect(pageSize + ALIGNMENT).alignedSlice(ALIGNMENT);
+        aligned.limit(pageSize);
+        buffers[frame] = aligned.slice();
+        addresses[frame] = UnsafeHelper.UNSAFE.getLong(buffers[frame], ADDRESS_OFFSET);
+    }
+
+    // offset of the field with memory address of a direct buffer
+    private static long addressOffset() {
+        try {
+            return UnsafeHelper.UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+        } catch (NoSuchFieldException e) {
+            throw new Error(e);
+        }
+    }
+}
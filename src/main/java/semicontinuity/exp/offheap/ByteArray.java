@@ -9,4 +9,22 @@ public interface ByteArray extends Closeable {
 
     @Override
     void close();
+
+    /**
+     * Reads values at the given positions: out[i] = get(idx[i]), for i in [0, count).
+     */
+    default void gather(long[] idx, byte[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = get(idx[i]);
+        }
+    }
+
+    /**
+     * Writes values at the given positions: set(idx[i], values[i]), for i in [0, count).
+     */
+    default void scatter(long[] idx, byte[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            set(idx[i], values[i]);
+        }
+    }
 }
@@ -18,6 +18,10 @@ public class ByteArrayAsLongArrayAdapter implements LongArray {
         this.extraZeroes = extraZeroes;
     }
 
+    public ByteArray bytes() {
+        return buffer;
+    }
+
     @Override
     public long get(long pos) {
         if (pos >= buffer.length()) {
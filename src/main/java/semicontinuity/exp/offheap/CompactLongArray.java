@@ -0,0 +1,136 @@
+package semicontinuity.exp.offheap;
+
+/**
+ * Read-only LongArray for values, that are mostly small, like LCP: one byte per value,
+ * and a table of exceptions (values outside [0, 254], e.g. -1 at lcp[0]), sorted by index.
+ * Storage layout: length (8 bytes), number of exceptions (8 bytes), bytes of values (0xFF for exceptions),
+ * followed by exceptions as pairs of longs (index, value).
+ * The same layout is used when the storage is a mapped file.
+ * <p>
+ * get() is a read of one byte, and a binary search in the table for exceptions.
+ */
+public class CompactLongArray implements LongArray {
+    private static final long HEADER_SIZE = 2 * Long.BYTES;
+    private static final int EXCEPTION = 0xFF;
+
+    private final OffheapByteArray storage;
+    private final long length;
+    private final long exceptionCount;
+    private final long bytesAddress;
+    private final long exceptionsAddress;
+
+    /**
+     * Wraps existing storage, e.g. mapped file, that was written with {@link #write(LongArray, OffheapByteArray)}.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public CompactLongArray(OffheapByteArray storage) {
+        this.storage = storage;
+        this.length = UnsafeHelper.UNSAFE.getLong(storage.address);
+        this.exceptionCount = UnsafeHelper.UNSAFE.getLong(storage.address + Long.BYTES);
+        this.bytesAddress = storage.address + HEADER_SIZE;
+        this.exceptionsAddress = bytesAddress + length;
+        if (storage.size < storageSize(length, exceptionCount)) {
+            throw new IllegalArgumentException("Storage is too small: " + storage.size);
+        }
+    }
+
+    /**
+     * Encodes the given values in memory.
+     */
+    public static CompactLongArray of(LongArray values) {
+        OffheapByteArray storage = new OffheapByteArray(storageSize(values));
+        return new CompactLongArray(write(values, storage));
+    }
+
+    /**
+     * @return size of storage for the given values (reads them sequentially)
+     */
+    public static long storageSize(LongArray values) {
+        long exceptions = 0;
+        for (long i = 0; i < values.length(); i++) {
+            if (isException(values.get(i))) {
+                exceptions++;
+            }
+        }
+        return storageSize(values.length(), exceptions);
+    }
+
+    private static long storageSize(long length, long exceptions) {
+        return HEADER_SIZE + length + exceptions * 2 * Long.BYTES;
+    }
+
+    /**
+     * Encodes values to storage of {@link #storageSize(LongArray)} bytes, with one sequential pass.
+     */
+    public static OffheapByteArray write(LongArray values, OffheapByteArray storage) {
+        long length = values.length();
+        long bytesAddress = storage.address + HEADER_SIZE;
+        long exception = bytesAddress + length;
+        long exceptions = 0;
+        for (long i = 0; i < length; i++) {
+            long value = values.get(i);
+            if (isException(value)) {
+                if (exception + 2 * Long.BYTES > storage.address + storage.size) {
+                    throw new IllegalArgumentException("Storage is too small: " + storage.size);
+                }
+                UnsafeHelper.UNSAFE.putByte(bytesAddress + i, (byte) EXCEPTION);
+                UnsafeHelper.UNSAFE.putLong(exception, i);
+                UnsafeHelper.UNSAFE.putLong(exception + Long.BYTES, value);
+                exception += 2 * Long.BYTES;
+                exceptions++;
+            } else {
+                UnsafeHelper.UNSAFE.putByte(bytesAddress + i, (byte) value);
+            }
+        }
+        UnsafeHelper.UNSAFE.putLong(storage.address, length);
+        UnsafeHelper.UNSAFE.putLong(storage.address + Long.BYTES, exceptions);
+        return storage;
+    }
+
+    private static boolean isException(long value) {
+        return value < 0 || value >= EXCEPTION;
+    }
+
+    @Override
+    public long get(long pos) {
+        int b = UnsafeHelper.UNSAFE.getByte(bytesAddress + pos) & 0xFF;
+        return b != EXCEPTION ? b : exception(pos);
+    }
+
+    // binary search in the table of exceptions
+    private long exception(long pos) {
+        long lo = 0;
+        long hi = exceptionCount - 1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            long index = UnsafeHelper.UNSAFE.getLong(exceptionsAddress + mid * 2 * Long.BYTES);
+            if (index < pos) {
+                lo = mid + 1;
+            } else if (index > pos) {
+                hi = mid - 1;
+            } else {
+                return UnsafeHelper.UNSAFE.getLong(exceptionsAddress + mid * 2 * Long.BYTES + Long.BYTES);
+            }
+        }
+        throw new IllegalStateException("No exception at " + pos);
+    }
+
+    @Override
+    public void set(long pos, long value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    public long exceptionCount() {
+        return exceptionCount;
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+}
@@ -0,0 +1,32 @@
+package semicontinuity.exp.offheap;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompactLongArrayTest {
+
+    @Test
+    public void get() {
+        Random random = new Random(1);
+        LongArray values = new OffheapByteArrayAsLongArrayLsb(10_000);
+        values.set(0, -1);
+        for (long i = 1; i < values.length(); i++) {
+            values.set(i, random.nextInt(20) == 0 ? 254 + random.nextInt(1_000_000) : random.nextInt(254));
+        }
+        CompactLongArray a = CompactLongArray.of(values);
+
+        Assert.assertEquals(values.length(), a.length());
+        long exceptions = 0;
+        for (long i = 0; i < values.length(); i++) {
+            Assert.assertEquals(values.get(i), a.get(i));
+            if (values.get(i) < 0 || values.get(i) > 254) {
+                exceptions++;
+            }
+        }
+        Assert.assertEquals(exceptions, a.exceptionCount());
+        a.close();
+        values.close();
+    }
+}
@@ -0,0 +1,188 @@
+package semicontinuity.exp.offheap;
+
+/**
+ * Read-only LongArray for monotone (non-decreasing, non-negative) sequences, in Elias-Fano encoding.
+ * For n values below U, every value is split into l = floor(log2(U/n)) low bits, stored verbatim,
+ * and high bits, stored in unary in a bit vector of n + U/2^l bits with select support.
+ * Takes about 2 + log2(U/n) bits per element.
+ * <p>
+ * get() is a select1 and a read of low bits; for sequential access use {@link #cursor(long)}.
+ */
+public class EliasFanoLongArray implements LongArray {
+    private final long length;
+    private final int lowBits;
+    private final OffheapBitVector low;
+    private final RankSelectBitVector high;
+
+    private EliasFanoLongArray(long length, int lowBits, OffheapBitVector low, RankSelectBitVector high) {
+        this.length = length;
+        this.lowBits = lowBits;
+        this.low = low;
+        this.high = high;
+    }
+
+    /**
+     * Encodes the given monotone sequence.
+     */
+    public static EliasFanoLongArray of(LongArray values) {
+        long n = values.length();
+        Builder builder = new Builder(n, n == 0 ? 0 : values.get(n - 1));
+        for (long i = 0; i < n; i++) {
+            builder.add(values.get(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Encodes the sequence, supplied value by value.
+     */
+    public static class Builder {
+        private final long length;
+        private final long maxValue;
+        private final int lowBits;
+        private final OffheapBitVector low;
+        private final OffheapBitVector high;
+        private long count;
+        private long last;
+
+        /**
+         * @param length   exact number of values that will be added
+         * @param maxValue upper bound of the values (inclusive)
+         */
+        @SuppressWarnings("WeakerAccess")
+        public Builder(long length, long maxValue) {
+            this.length = length;
+            this.maxValue = maxValue;
+            long universe = maxValue + 1;
+            this.lowBits = length == 0 || universe / length == 0 ? 0 : 63 - Long.numberOfLeadingZeros(universe / length);
+            this.low = new OffheapBitVector(length * lowBits);
+            this.high = new OffheapBitVector(length + (maxValue >>> lowBits) + 1);
+        }
+
+        public Builder add(long value) {
+            if (count == length) {
+                throw new IllegalStateException("More than " + length + " values");
+            }
+            if (value < last || value > maxValue) {
+                throw new IllegalArgumentException(String.valueOf(value));
+            }
+            if (lowBits != 0) {
+                low.setBits(count * lowBits, lowBits, value);
+            }
+            high.set((value >>> lowBits) + count);
+            last = value;
+            count++;
+            return this;
+        }
+
+        public EliasFanoLongArray build() {
+            if (count != length) {
+                throw new IllegalStateException("Expected " + length + " values, got " + count);
+            }
+            return new EliasFanoLongArray(length, lowBits, low, new RankSelectBitVector(high));
+        }
+    }
+
+    /**
+     * Sequential reader, starting at some index; avoids select for every element.
+     */
+    public class Cursor {
+        private long index;
+        private long highPos;
+
+        private Cursor(long index, long highPos) {
+            this.index = index;
+            this.highPos = highPos;
+        }
+
+        public boolean hasNext() {
+            return index < length;
+        }
+
+        /**
+         * Index of the element, that will be returned by the next call to {@link #next()}.
+         */
+        public long index() {
+            return index;
+        }
+
+        public long next() {
+            OffheapBitVector bits = high.bits();
+            long w = highPos >>> 6;
+            long word = bits.word(w) & (-1L << highPos);
+            while (word == 0) {
+                word = bits.word(++w);
+            }
+            long pos = (w << 6) + Long.numberOfTrailingZeros(word);
+            highPos = pos + 1;
+            long value = ((pos - index) << lowBits) | lowAt(index);
+            index++;
+            return value;
+        }
+    }
+
+    public Cursor cursor(long index) {
+        return new Cursor(index, index < length ? high.select1(index) : high.length());
+    }
+
+    @Override
+    public long get(long pos) {
+        if (pos < 0 || pos >= length) {
+            throw new IllegalArgumentException(String.valueOf(pos));
+        }
+        return ((high.select1(pos) - pos) << lowBits) | lowAt(pos);
+    }
+
+    @Override
+    public void set(long pos, long value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return index of the first element, that is greater or equal to value; length() if there is none
+     */
+    public long successor(long value) {
+        if (length == 0 || value <= 0) {
+            return 0;
+        }
+        long h = value >>> lowBits;
+        if (h >= high.zeroes()) {
+            return length;
+        }
+        // elements with high part >= h start after the h-th zero
+        long pos = h == 0 ? 0 : high.select0(h - 1) + 1;
+        Cursor cursor = new Cursor(pos - h, pos);
+        while (cursor.hasNext()) {
+            long index = cursor.index();
+            if (cursor.next() >= value) {
+                return index;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return index of the last element, that is less or equal to value; -1 if there is none
+     */
+    public long predecessor(long value) {
+        if (value == Long.MAX_VALUE) {
+            return length - 1;
+        }
+        return successor(value + 1) - 1;
+    }
+
+    @Override
+    public void close() {
+        low.close();
+        high.close();
+    }
+
+    private long lowAt(long index) {
+        return lowBits == 0 ? 0 : low.getBits(index * lowBits, lowBits);
+    }
+}
@@ -0,0 +1,67 @@
+package semicontinuity.exp.offheap;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EliasFanoLongArrayTest {
+
+    @Test
+    public void getAndIterate() {
+        long[] values = values(10_000, 1000);
+        EliasFanoLongArray a = EliasFanoLongArray.of(longArray(values));
+
+        Assert.assertEquals(values.length, a.length());
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], a.get(i));
+        }
+
+        EliasFanoLongArray.Cursor cursor = a.cursor(17);
+        for (int i = 17; i < values.length; i++) {
+            Assert.assertTrue(cursor.hasNext());
+            Assert.assertEquals(values[i], cursor.next());
+        }
+        Assert.assertFalse(cursor.hasNext());
+        a.close();
+    }
+
+    @Test
+    public void successorPredecessor() {
+        long[] values = values(1000, 50);
+        EliasFanoLongArray a = EliasFanoLongArray.of(longArray(values));
+        long max = values[values.length - 1];
+        for (long x = 0; x <= max + 1; x++) {
+            int successor = 0;
+            while (successor < values.length && values[successor] < x) {
+                successor++;
+            }
+            Assert.assertEquals(successor, a.successor(x));
+            int predecessor = values.length - 1;
+            while (predecessor >= 0 && values[predecessor] > x) {
+                predecessor--;
+            }
+            Assert.assertEquals(predecessor, a.predecessor(x));
+        }
+        a.close();
+    }
+
+    private static long[] values(int n, int maxGap) {
+        Random random = new Random(n);
+        long[] values = new long[n];
+        long value = 0;
+        for (int i = 0; i < n; i++) {
+            value += random.nextInt(maxGap);
+            values[i] = value;
+        }
+        return values;
+    }
+
+    private static LongArray longArray(long[] values) {
+        OffheapByteArrayAsLongArrayLsb array = new OffheapByteArrayAsLongArrayLsb(values.length);
+        for (int i = 0; i < values.length; i++) {
+            array.set(i, values[i]);
+        }
+        return array;
+    }
+}
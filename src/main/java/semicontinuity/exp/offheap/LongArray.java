@@ -15,4 +15,23 @@ public interface LongArray extends Closeable {
         set(pos, newValue);
         return newValue;
     }
+
+    /**
+     * Reads values at the given positions: out[i] = get(idx[i]), for i in [0, count).
+     * See {@link BatchedAccess} for the version, that reorders positions for locality.
+     */
+    default void gather(long[] idx, long[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = get(idx[i]);
+        }
+    }
+
+    /**
+     * Writes values at the given positions: set(idx[i], values[i]), for i in [0, count).
+     */
+    default void scatter(long[] idx, long[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            set(idx[i], values[i]);
+        }
+    }
 }
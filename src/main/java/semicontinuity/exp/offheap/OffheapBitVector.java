@@ -0,0 +1,150 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+import java.util.PrimitiveIterator;
+import java.util.function.LongPredicate;
+
+/**
+ * Bit vector stored in off-heap memory.
+ * Storage layout: length in bits (8 bytes), followed by 64-bit words (bit i is bit (i % 64) of word (i / 64)).
+ * The same layout is used when the storage is a mapped file.
+ */
+public class OffheapBitVector implements Closeable {
+    static final long HEADER_SIZE = Long.BYTES;
+
+    private final OffheapByteArray storage;
+    private final long length;
+    final long wordsAddress;
+
+    /**
+     * Allocates zeroed bit vector.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public OffheapBitVector(long length) {
+        this(init(new OffheapByteArray(storageSize(length)), length));
+    }
+
+    /**
+     * Wraps existing storage, e.g. mapped file, that was initialized with {@link #init(OffheapByteArray, long)}.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public OffheapBitVector(OffheapByteArray storage) {
+        this.storage = storage;
+        this.length = UnsafeHelper.UNSAFE.getLong(storage.address);
+        this.wordsAddress = storage.address + HEADER_SIZE;
+        if (storage.size < storageSize(length)) {
+            throw new IllegalArgumentException("Storage is too small: " + storage.size);
+        }
+    }
+
+    public static long storageSize(long length) {
+        return HEADER_SIZE + wordCount(length) * Long.BYTES;
+    }
+
+    /**
+     * Writes header and clears all bits.
+     */
+    public static OffheapByteArray init(OffheapByteArray storage, long length) {
+        UnsafeHelper.UNSAFE.setMemory(storage.address, storageSize(length), (byte) 0);
+        UnsafeHelper.UNSAFE.putLong(storage.address, length);
+        return storage;
+    }
+
+    /**
+     * Bit i is set, if predicate holds for values.get(i).
+     */
+    public static OffheapBitVector of(LongArray values, LongPredicate predicate) {
+        OffheapBitVector result = new OffheapBitVector(values.length());
+        for (long i = 0; i < values.length(); i++) {
+            if (predicate.test(values.get(i))) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets bits at the positions, supplied by the iterator (e.g. LongStream.iterator()).
+     */
+    public static OffheapBitVector ofPositions(long length, PrimitiveIterator.OfLong positions) {
+        OffheapBitVector result = new OffheapBitVector(length);
+        while (positions.hasNext()) {
+            result.set(positions.nextLong());
+        }
+        return result;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public boolean get(long pos) {
+        return (word(pos >>> 6) & (1L << pos)) != 0;
+    }
+
+    public void set(long pos) {
+        long address = wordsAddress + (pos >>> 6) * Long.BYTES;
+        UnsafeHelper.UNSAFE.putLong(address, UnsafeHelper.UNSAFE.getLong(address) | (1L << pos));
+    }
+
+    public void clear(long pos) {
+        long address = wordsAddress + (pos >>> 6) * Long.BYTES;
+        UnsafeHelper.UNSAFE.putLong(address, UnsafeHelper.UNSAFE.getLong(address) & ~(1L << pos));
+    }
+
+    public void set(long pos, boolean value) {
+        if (value) {
+            set(pos);
+        } else {
+            clear(pos);
+        }
+    }
+
+    /**
+     * Reads count (1..64) bits starting at pos, as an unsigned value (bit pos is the least significant).
+     */
+    public long getBits(long pos, int count) {
+        long w = pos >>> 6;
+        int offset = (int) (pos & 63);
+        long value = word(w) >>> offset;
+        if (offset + count > 64) {
+            value |= word(w + 1) << (64 - offset);
+        }
+        return count == 64 ? value : value & ((1L << count) - 1);
+    }
+
+    /**
+     * Writes count (1..64) lowest bits of value starting at pos.
+     */
+    public void setBits(long pos, int count, long value) {
+        long mask = count == 64 ? -1L : (1L << count) - 1;
+        value &= mask;
+        long address = wordsAddress + (pos >>> 6) * Long.BYTES;
+        int offset = (int) (pos & 63);
+        UnsafeHelper.UNSAFE.putLong(address,
+                (UnsafeHelper.UNSAFE.getLong(address) & ~(mask << offset)) | (value << offset));
+        if (offset + count > 64) {
+            int shift = 64 - offset;
+            address += Long.BYTES;
+            UnsafeHelper.UNSAFE.putLong(address,
+                    (UnsafeHelper.UNSAFE.getLong(address) & ~(mask >>> shift)) | (value >>> shift));
+        }
+    }
+
+    public long wordCount() {
+        return wordCount(length);
+    }
+
+    public long word(long index) {
+        return UnsafeHelper.UNSAFE.getLong(wordsAddress + index * Long.BYTES);
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+
+    private static long wordCount(long length) {
+        return (length + 63) >>> 6;
+    }
+}
@@ -18,6 +18,13 @@ public class OffheapByteArray implements ByteArray {
         this.size = size;
     }
 
+    /**
+     * @return address of the first byte, for kernels, that access memory directly; valid until closed
+     */
+    public long address() {
+        return address;
+    }
+
     @Override
     public byte get(long index) {
         return UnsafeHelper.getByte(address + index);
@@ -28,6 +35,20 @@ public class OffheapByteArray implements ByteArray {
         UnsafeHelper.setByte(address + index, value);
     }
 
+    @Override
+    public void gather(long[] idx, byte[] out, int count) {
+        for (int i = 0; i < count; i++) {
+            out[i] = UnsafeHelper.getByte(address + idx[i]);
+        }
+    }
+
+    @Override
+    public void scatter(long[] idx, byte[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            UnsafeHelper.setByte(address + idx[i], values[i]);
+        }
+    }
+
     @Override
     public long length() {
         return size;
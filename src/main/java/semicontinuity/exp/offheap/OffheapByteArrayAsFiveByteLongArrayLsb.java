@@ -45,6 +45,36 @@ public class OffheapByteArrayAsFiveByteLongArrayLsb implements LongArray, Closea
         UnsafeHelper.UNSAFE.putByte(buffer.address + pos * ITEM_SIZE + 4, b);
     }
 
+    @Override
+    public void gather(long[] idx, long[] out, int count) {
+        long address = buffer.address;
+        long length = length();
+        for (int i = 0; i < count; i++) {
+            long pos = idx[i];
+            if (pos < 0 || pos >= length) {
+                throw new IllegalArgumentException(String.valueOf(pos));
+            }
+            long a = address + pos * ITEM_SIZE;
+            out[i] = (0x00000000FFFFFFFFL & UnsafeHelper.UNSAFE.getInt(a))
+                    | (((long) UnsafeHelper.UNSAFE.getByte(a + 4) << 32) & 0xFFFFFFFF00000000L);
+        }
+    }
+
+    @Override
+    public void scatter(long[] idx, long[] values, int count) {
+        long address = buffer.address;
+        long length = length();
+        for (int i = 0; i < count; i++) {
+            long pos = idx[i];
+            if (pos < 0 || pos >= length) {
+                throw new IllegalArgumentException(String.valueOf(pos) + ", length: " + length);
+            }
+            long a = address + pos * ITEM_SIZE;
+            UnsafeHelper.UNSAFE.putInt(a, (int) values[i]);
+            UnsafeHelper.UNSAFE.putByte(a + 4, (byte) (values[i] >> 32));
+        }
+    }
+
     @Override
     public long length() {
         return buffer.length() / ITEM_SIZE;
@@ -26,6 +26,22 @@ public class OffheapByteArrayAsLongArrayLsb implements LongArray, Closeable {
         UnsafeHelper.UNSAFE.putLong(buffer.address + pos * Long.BYTES, value);
     }
 
+    @Override
+    public void gather(long[] idx, long[] out, int count) {
+        long address = buffer.address;
+        for (int i = 0; i < count; i++) {
+            out[i] = UnsafeHelper.UNSAFE.getLong(address + idx[i] * Long.BYTES);
+        }
+    }
+
+    @Override
+    public void scatter(long[] idx, long[] values, int count) {
+        long address = buffer.address;
+        for (int i = 0; i < count; i++) {
+            UnsafeHelper.UNSAFE.putLong(address + idx[i] * Long.BYTES, values[i]);
+        }
+    }
+
     @Override
     public long length() {
         return buffer.size / Long.BYTES;
@@ -0,0 +1,283 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+
+/**
+ * Binary heap of (long key, long payload) entries, stored in off-heap memory.
+ * Can be min-heap or max-heap (by key).
+ * Every inserted entry gets a handle, that can be used to change its key or remove it later.
+ * Handles of removed entries are reused (so a handle must not be used after its entry was removed),
+ * and the handle of the top entry is passed to its replacement in {@link #replaceTop(long, long)},
+ * so the number of handles is bounded by the maximal size of the heap.
+ * No objects are allocated per entry.
+ */
+public class OffheapLongHeap implements Closeable {
+
+    // entry: key, payload, handle
+    private static final int ENTRY_SIZE = 3 * Long.BYTES;
+
+    private final boolean max;
+
+    private OffheapByteArray entries;
+    private long capacity;
+    private long size;
+
+    // handle -> position in heap, or, for a free handle, -2 - next free handle (-1 at the end of the free list)
+    private OffheapByteArray positions;
+    private long handleCapacity;
+    private long handles;
+    private long freeHandle = -1;
+
+    @SuppressWarnings("WeakerAccess")
+    public OffheapLongHeap(long initialCapacity, boolean max) {
+        this.max = max;
+        this.capacity = Math.max(1, initialCapacity);
+        this.entries = new OffheapByteArray(capacity * ENTRY_SIZE);
+        this.handleCapacity = capacity;
+        this.positions = new OffheapByteArray(handleCapacity * Long.BYTES);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return handle of the inserted entry
+     */
+    public long insert(long key, long payload) {
+        if (size == capacity) {
+            entries = grow(entries, capacity * ENTRY_SIZE, capacity * 2 * ENTRY_SIZE);
+            capacity *= 2;
+        }
+        long handle = newHandle();
+        long pos = size++;
+        setEntry(pos, key, payload, handle);
+        siftUp(pos);
+        return handle;
+    }
+
+    public long topKey() {
+        checkNotEmpty();
+        return keyAt(0);
+    }
+
+    public long topPayload() {
+        checkNotEmpty();
+        return payloadAt(0);
+    }
+
+    public long topHandle() {
+        checkNotEmpty();
+        return handleAt(0);
+    }
+
+    /**
+     * Removes top entry.
+     * @return payload of the removed entry
+     */
+    public long poll() {
+        checkNotEmpty();
+        long payload = payloadAt(0);
+        removeAt(0);
+        return payload;
+    }
+
+    /**
+     * Replaces top entry with the new one; cheaper than poll() followed by insert().
+     * @return handle of the inserted entry
+     */
+    public long replaceTop(long key, long payload) {
+        checkNotEmpty();
+        long handle = handleAt(0);
+        setEntry(0, key, payload, handle);
+        siftDown(0);
+        return handle;
+    }
+
+    public boolean contains(long handle) {
+        return handle >= 0 && handle < handles && positionOf(handle) >= 0;
+    }
+
+    public long key(long handle) {
+        return keyAt(checkedPosition(handle));
+    }
+
+    public long payload(long handle) {
+        return payloadAt(checkedPosition(handle));
+    }
+
+    /**
+     * Changes key of the entry with the given handle, in either direction
+     * (decrease-key for min-heap, increase-key for max-heap, and the opposite).
+     */
+    public void changeKey(long handle, long key) {
+        long pos = checkedPosition(handle);
+        long oldKey = keyAt(pos);
+        UnsafeHelper.UNSAFE.putLong(entryAddress(pos), key);
+        if (above(key, oldKey)) {
+            siftUp(pos);
+        } else {
+            siftDown(pos);
+        }
+    }
+
+    public void remove(long handle) {
+        removeAt(checkedPosition(handle));
+    }
+
+    public void clear() {
+        for (long pos = 0; pos < size; pos++) {
+            freeHandle(handleAt(pos));
+        }
+        size = 0;
+    }
+
+    /**
+     * Visits all entries in heap order (not sorted).
+     */
+    public void forEach(OffheapLongLongHashMap.EntryConsumer consumer) {
+        for (long pos = 0; pos < size; pos++) {
+            consumer.accept(keyAt(pos), payloadAt(pos));
+        }
+    }
+
+    @Override
+    public void close() {
+        entries.close();
+        positions.close();
+    }
+
+
+    long handleCapacity() {
+        return handleCapacity;
+    }
+
+    private long newHandle() {
+        if (freeHandle >= 0) {
+            long handle = freeHandle;
+            freeHandle = -2 - positionOf(handle);
+            return handle;
+        }
+        if (handles == handleCapacity) {
+            positions = grow(positions, handleCapacity * Long.BYTES, handleCapacity * 2 * Long.BYTES);
+            handleCapacity *= 2;
+        }
+        return handles++;
+    }
+
+    private void freeHandle(long handle) {
+        setPosition(handle, -2 - freeHandle);
+        freeHandle = handle;
+    }
+
+    private void removeAt(long pos) {
+        freeHandle(handleAt(pos));
+        long last = --size;
+        if (pos != last) {
+            long key = keyAt(last);
+            long oldKey = keyAt(pos);
+            setEntry(pos, key, payloadAt(last), handleAt(last));
+            if (above(key, oldKey)) {
+                siftUp(pos);
+            } else {
+                siftDown(pos);
+            }
+        }
+    }
+
+    private void siftUp(long pos) {
+        long key = keyAt(pos);
+        long payload = payloadAt(pos);
+        long handle = handleAt(pos);
+        while (pos > 0) {
+            long parent = (pos - 1) >>> 1;
+            if (!above(key, keyAt(parent))) {
+                break;
+            }
+            setEntry(pos, keyAt(parent), payloadAt(parent), handleAt(parent));
+            pos = parent;
+        }
+        setEntry(pos, key, payload, handle);
+    }
+
+    private void siftDown(long pos) {
+        long key = keyAt(pos);
+        long payload = payloadAt(pos);
+        long handle = handleAt(pos);
+        long half = size >>> 1;
+        while (pos < half) {
+            long child = 2 * pos + 1;
+            long right = child + 1;
+            if (right < size && above(keyAt(right), keyAt(child))) {
+                child = right;
+            }
+            if (!above(keyAt(child), key)) {
+                break;
+            }
+            setEntry(pos, keyAt(child), payloadAt(child), handleAt(child));
+            pos = child;
+        }
+        setEntry(pos, key, payload, handle);
+    }
+
+    // true if key a must be closer to the top than key b
+    private boolean above(long a, long b) {
+        return max ? a > b : a < b;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new IllegalStateException("Heap is empty");
+        }
+    }
+
+    private long checkedPosition(long handle) {
+        if (!contains(handle)) {
+            throw new IllegalArgumentException(String.valueOf(handle));
+        }
+        return positionOf(handle);
+    }
+
+    private static OffheapByteArray grow(OffheapByteArray array, long oldSize, long newSize) {
+        OffheapByteArray result = new OffheapByteArray(newSize);
+        UnsafeHelper.UNSAFE.copyMemory(array.address, result.address, oldSize);
+        array.close();
+        return result;
+    }
+
+    private long entryAddress(long pos) {
+        return entries.address + pos * ENTRY_SIZE;
+    }
+
+    private void setEntry(long pos, long key, long payload, long handle) {
+        long address = entryAddress(pos);
+        UnsafeHelper.UNSAFE.putLong(address, key);
+        UnsafeHelper.UNSAFE.putLong(address + Long.BYTES, payload);
+        UnsafeHelper.UNSAFE.putLong(address + 2 * Long.BYTES, handle);
+        setPosition(handle, pos);
+    }
+
+    private long keyAt(long pos) {
+        return UnsafeHelper.UNSAFE.getLong(entryAddress(pos));
+    }
+
+    private long payloadAt(long pos) {
+        return UnsafeHelper.UNSAFE.getLong(entryAddress(pos) + Long.BYTES);
+    }
+
+    private long handleAt(long pos) {
+        return UnsafeHelper.UNSAFE.getLong(entryAddress(pos) + 2 * Long.BYTES);
+    }
+
+    private long positionOf(long handle) {
+        return UnsafeHelper.UNSAFE.getLong(positions.address + handle * Long.BYTES);
+    }
+
+    private void setPosition(long handle, long pos) {
+        UnsafeHelper.UNSAFE.putLong(positions.address + handle * Long.BYTES, pos);
+    }
+}
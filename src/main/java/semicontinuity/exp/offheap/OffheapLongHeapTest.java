@@ -0,0 +1,98 @@
+package semicontinuity.exp.offheap;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffheapLongHeapTest {
+
+    @Test
+    public void pollInOrder() {
+        OffheapLongHeap heap = new OffheapLongHeap(2, false);
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            long key = random.nextInt(100);
+            heap.insert(key, key * 10);
+        }
+        long previous = Long.MIN_VALUE;
+        while (!heap.isEmpty()) {
+            long key = heap.topKey();
+            Assert.assertTrue(key >= previous);
+            Assert.assertEquals(key * 10, heap.poll());
+            previous = key;
+        }
+        heap.close();
+    }
+
+    @Test
+    public void changeKeyAndRemove() {
+        OffheapLongHeap heap = new OffheapLongHeap(4, false);
+        long a = heap.insert(10, 1);
+        long b = heap.insert(20, 2);
+        long c = heap.insert(30, 3);
+
+        heap.changeKey(c, 5);
+        Assert.assertEquals(3, heap.topPayload());
+        heap.changeKey(c, 25);
+        Assert.assertEquals(1, heap.topPayload());
+
+        heap.remove(a);
+        Assert.assertFalse(heap.contains(a));
+        Assert.assertEquals(2, heap.poll());
+        Assert.assertEquals(25, heap.key(c));
+        Assert.assertTrue(heap.contains(c));
+        Assert.assertFalse(heap.contains(b));
+        heap.close();
+    }
+
+    @Test
+    public void handlesAreReused() {
+        OffheapLongHeap heap = new OffheapLongHeap(4, true);
+        long a = heap.insert(10, 1);
+        long b = heap.insert(20, 2);
+        Assert.assertEquals(b, heap.replaceTop(5, 3));
+        heap.remove(a);
+        long c = heap.insert(30, 4);
+        Assert.assertEquals(a, c);
+        Assert.assertEquals(30, heap.key(c));
+        Assert.assertEquals(5, heap.key(b));
+        heap.clear();
+        Assert.assertFalse(heap.contains(b));
+        Assert.assertFalse(heap.contains(c));
+        heap.insert(1, 1);
+        heap.insert(2, 2);
+        heap.insert(3, 3);
+        Assert.assertEquals(4, heap.handleCapacity());
+        heap.close();
+    }
+
+    @Test
+    public void topKIsBounded() {
+        TopKCollector collector = new TopKCollector(100);
+        Random random = new Random(2);
+        for (int i = 0; i < 1000; i++) {
+            collector.offer(random.nextInt(), i);
+        }
+        Assert.assertEquals(100, collector.size());
+        Assert.assertTrue(collector.handleCapacity() <= 200);
+    }
+
+    @Test
+    public void topK() {
+        TopKCollector left = new TopKCollector(3);
+        TopKCollector right = new TopKCollector(3);
+        for (long i = 0; i < 10; i++) {
+            left.offer(i, -i);
+            right.offer(i + 5, -i - 5);
+        }
+        left.merge(right);
+        long[] keys = new long[3];
+        long[] payloads = new long[3];
+        Assert.assertEquals(3, left.drainTo(keys, payloads));
+        Assert.assertArrayEquals(new long[]{14, 13, 12}, keys);
+        Assert.assertArrayEquals(new long[]{-14, -13, -12}, payloads);
+        left.close();
+        right.close();
+    }
+}
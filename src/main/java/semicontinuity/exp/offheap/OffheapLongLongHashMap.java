@@ -0,0 +1,195 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+
+/**
+ * Open-addressing hash map from long to long, stored in off-heap memory.
+ * Slots are (key, value) pairs of longs, collisions are resolved with linear probing.
+ * Key 0 marks an empty slot, so the entry for key 0 is kept aside in fields.
+ * No objects are allocated per entry.
+ * Not thread-safe; see {@link StripedLongLongHashMap} for concurrent use.
+ */
+public class OffheapLongLongHashMap implements Closeable {
+
+    private static final int SLOT_SIZE = 2 * Long.BYTES;
+    private static final double LOAD_FACTOR = 0.75;
+
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    private OffheapByteArray slots;
+    private long capacity;
+    private long mask;
+    private long size;
+    private long threshold;
+
+    private boolean hasZeroKey;
+    private long zeroKeyValue;
+
+    @SuppressWarnings("WeakerAccess")
+    public OffheapLongLongHashMap(long expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public long get(long key, long defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroKeyValue : defaultValue;
+        }
+        long slot = find(key);
+        return slot < 0 ? defaultValue : valueAt(slot);
+    }
+
+    public boolean containsKey(long key) {
+        return key == 0 ? hasZeroKey : find(key) >= 0;
+    }
+
+    public void put(long key, long value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroKeyValue = value;
+            return;
+        }
+        long slot = findOrInsert(key);
+        setValueAt(slot, value);
+    }
+
+    /**
+     * Adds delta to the value associated with the key (absent values are treated as 0).
+     * @return new value
+     */
+    public long add(long key, long delta) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            return zeroKeyValue += delta;
+        }
+        long slot = findOrInsert(key);
+        long newValue = valueAt(slot) + delta;
+        setValueAt(slot, newValue);
+        return newValue;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroKeyValue);
+        }
+        for (long slot = 0; slot < capacity; slot++) {
+            long key = keyAt(slot);
+            if (key != 0) {
+                consumer.accept(key, valueAt(slot));
+            }
+        }
+    }
+
+    public void clear() {
+        UnsafeHelper.UNSAFE.setMemory(slots.address, slots.size, (byte) 0);
+        size = 0;
+        hasZeroKey = false;
+        zeroKeyValue = 0;
+    }
+
+    @Override
+    public void close() {
+        slots.close();
+    }
+
+
+    static long hash(long key) {
+        // murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private long find(long key) {
+        for (long slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long k = keyAt(slot);
+            if (k == key) {
+                return slot;
+            }
+            if (k == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private long findOrInsert(long key) {
+        for (long slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long k = keyAt(slot);
+            if (k == key) {
+                return slot;
+            }
+            if (k == 0) {
+                if (size + 1 > threshold) {
+                    rehash(capacity << 1);
+                    return findOrInsert(key);
+                }
+                setKeyAt(slot, key);
+                setValueAt(slot, 0);
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    private void rehash(long newCapacity) {
+        OffheapByteArray oldSlots = slots;
+        long oldCapacity = capacity;
+        allocate(newCapacity);
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            long key = UnsafeHelper.UNSAFE.getLong(oldSlots.address + slot * SLOT_SIZE);
+            if (key != 0) {
+                long value = UnsafeHelper.UNSAFE.getLong(oldSlots.address + slot * SLOT_SIZE + Long.BYTES);
+                long s = hash(key) & mask;
+                while (keyAt(s) != 0) {
+                    s = (s + 1) & mask;
+                }
+                setKeyAt(s, key);
+                setValueAt(s, value);
+            }
+        }
+        oldSlots.close();
+    }
+
+    private void allocate(long capacity) {
+        this.slots = new OffheapByteArray(capacity * SLOT_SIZE);
+        UnsafeHelper.UNSAFE.setMemory(slots.address, slots.size, (byte) 0);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.threshold = (long) (capacity * LOAD_FACTOR);
+    }
+
+    private static long capacityFor(long expectedSize) {
+        long required = Math.max(2, (long) Math.ceil(expectedSize / LOAD_FACTOR) + 1);
+        return Long.highestOneBit(required - 1) << 1;
+    }
+
+    private long keyAt(long slot) {
+        return UnsafeHelper.UNSAFE.getLong(slots.address + slot * SLOT_SIZE);
+    }
+
+    private void setKeyAt(long slot, long key) {
+        UnsafeHelper.UNSAFE.putLong(slots.address + slot * SLOT_SIZE, key);
+    }
+
+    private long valueAt(long slot) {
+        return UnsafeHelper.UNSAFE.getLong(slots.address + slot * SLOT_SIZE + Long.BYTES);
+    }
+
+    private void setValueAt(long slot, long value) {
+        UnsafeHelper.UNSAFE.putLong(slots.address + slot * SLOT_SIZE + Long.BYTES, value);
+    }
+}
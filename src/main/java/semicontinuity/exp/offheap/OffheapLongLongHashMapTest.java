@@ -0,0 +1,56 @@
+package semicontinuity.exp.offheap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffheapLongLongHashMapTest {
+
+    @Test
+    public void putGetAdd() {
+        OffheapLongLongHashMap map = new OffheapLongLongHashMap(4);
+
+        Assert.assertEquals(-1, map.get(5, -1));
+        map.put(5, 50);
+        Assert.assertEquals(50, map.get(5, -1));
+        Assert.assertEquals(53, map.add(5, 3));
+        Assert.assertEquals(7, map.add(6, 7));
+
+        map.put(0, 10);
+        Assert.assertTrue(map.containsKey(0));
+        Assert.assertEquals(11, map.add(0, 1));
+        Assert.assertEquals(3, map.size());
+        map.close();
+    }
+
+    @Test
+    public void growAndIterate() {
+        OffheapLongLongHashMap map = new OffheapLongLongHashMap(1);
+        for (long i = -1000; i < 1000; i++) {
+            map.add(i * 7919, i);
+        }
+        Assert.assertEquals(2000, map.size());
+
+        Map<Long, Long> seen = new HashMap<>();
+        map.forEach(seen::put);
+        Assert.assertEquals(2000, seen.size());
+        for (long i = -1000; i < 1000; i++) {
+            Assert.assertEquals(i, (long) seen.get(i * 7919));
+            Assert.assertEquals(i, map.get(i * 7919, Long.MIN_VALUE));
+        }
+        map.close();
+    }
+
+    @Test
+    public void striped() {
+        StripedLongLongHashMap map = new StripedLongLongHashMap(16, 4);
+        for (long i = 0; i < 100; i++) {
+            map.add(i % 10, 1);
+        }
+        Assert.assertEquals(10, map.size());
+        Assert.assertEquals(10, map.get(3, 0));
+        map.close();
+    }
+}
@@ -0,0 +1,201 @@
+package semicontinuity.exp.offheap;
+
+/**
+ * Read-only LongArray view of a byte text with a small alphabet.
+ * Symbols, that occur in the text, are remapped to dense codes [0, alphabetSize) preserving their order
+ * (so suffix order and LCP values are the same as for the original text),
+ * and bit-packed with 2, 4, 6 or 8 bits per symbol.
+ * <p>
+ * Symbols are packed most significant first, so that {@link #word(long)} returns a group of symbols,
+ * that compares (unsigned) in lexicographic order; {@link #lce(long, long)} compares a word at a time.
+ * Like {@link ByteArrayAsLongArrayAdapter}, returns 0 for positions past the end.
+ */
+public class PackedText implements LongArray {
+    private final OffheapByteArray buffer;
+    private final long length;
+    private final int bits;
+    private final long mask;
+    private final int symbolsPerWord;
+    private final byte[] decode;
+
+    private PackedText(OffheapByteArray buffer, long length, int bits, byte[] decode) {
+        this.buffer = buffer;
+        this.length = length;
+        this.bits = bits;
+        this.mask = (1L << bits) - 1;
+        this.symbolsPerWord = 64 / bits;
+        this.decode = decode;
+    }
+
+    /**
+     * Packs the text; text values must be in the range [0-255].
+     */
+    public static PackedText of(LongArray text) {
+        long n = text.length();
+        boolean[] present = symbols(text);
+        int[] encode = new int[256];
+        int alphabetSize = 0;
+        for (int c = 0; c < 256; c++) {
+            if (present[c]) {
+                encode[c] = alphabetSize++;
+            }
+        }
+        byte[] decode = new byte[alphabetSize];
+        for (int c = 0; c < 256; c++) {
+            if (present[c]) {
+                decode[encode[c]] = (byte) c;
+            }
+        }
+
+        int bits = bitsFor(alphabetSize);
+        // one extra zero word, so that word() can read past the end
+        long words = (n * bits + 63) / 64 + 1;
+        OffheapByteArray buffer = new OffheapByteArray(words * Long.BYTES);
+        UnsafeHelper.UNSAFE.setMemory(buffer.address, buffer.size, (byte) 0);
+
+        long word = 0;
+        int filled = 0;
+        long w = 0;
+        for (long i = 0; i < n; i++) {
+            long code = encode[(int) text.get(i)];
+            int free = 64 - filled;
+            if (bits <= free) {
+                word |= code << (free - bits);
+                filled += bits;
+            } else {
+                word |= code >>> (bits - free);
+                UnsafeHelper.UNSAFE.putLong(buffer.address + w++ * Long.BYTES, word);
+                filled = bits - free;
+                word = code << (64 - filled);
+            }
+            if (filled == 64) {
+                UnsafeHelper.UNSAFE.putLong(buffer.address + w++ * Long.BYTES, word);
+                word = 0;
+                filled = 0;
+            }
+        }
+        if (filled != 0) {
+            UnsafeHelper.UNSAFE.putLong(buffer.address + w * Long.BYTES, word);
+        }
+        return new PackedText(buffer, n, bits, decode);
+    }
+
+    /**
+     * @return number of distinct symbols in the text
+     */
+    public static int alphabetSize(LongArray text) {
+        int result = 0;
+        for (boolean p : symbols(text)) {
+            if (p) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return bits per symbol, that will be used to pack text with the given alphabet size
+     */
+    public static int bitsFor(int alphabetSize) {
+        if (alphabetSize <= 4) {
+            return 2;
+        } else if (alphabetSize <= 16) {
+            return 4;
+        } else if (alphabetSize <= 64) {
+            return 6;
+        } else {
+            return 8;
+        }
+    }
+
+    public int alphabetSize() {
+        return decode.length;
+    }
+
+    public int bitsPerSymbol() {
+        return bits;
+    }
+
+    public int symbolsPerWord() {
+        return symbolsPerWord;
+    }
+
+    /**
+     * @return original byte value (in the range [0-255]) for the code
+     */
+    public long decode(long code) {
+        return decode[(int) code] & 0xFFL;
+    }
+
+    @Override
+    public long get(long pos) {
+        if (pos >= length) {
+            return 0;
+        }
+        long bitPos = pos * bits;
+        long w = bitPos >>> 6;
+        int offset = (int) (bitPos & 63);
+        int shift = 64 - offset - bits;
+        if (shift >= 0) {
+            return (wordAt(w) >>> shift) & mask;
+        }
+        return ((wordAt(w) << -shift) | (wordAt(w + 1) >>> (64 + shift))) & mask;
+    }
+
+    /**
+     * @return symbolsPerWord() symbols starting at pos (pos &lt; length()), first symbol in the most significant bits;
+     * positions past the end read as code 0
+     */
+    public long word(long pos) {
+        long bitPos = pos * bits;
+        long w = bitPos >>> 6;
+        int offset = (int) (bitPos & 63);
+        long value = offset == 0 ? wordAt(w) : (wordAt(w) << offset) | (wordAt(w + 1) >>> (64 - offset));
+        // drop incomplete trailing symbol
+        return value & (-1L << (64 - symbolsPerWord * bits));
+    }
+
+    /**
+     * @return length of the longest common extension of suffixes i and j
+     */
+    public long lce(long i, long j) {
+        long max = length - Math.max(i, j);
+        long h = 0;
+        while (h < max) {
+            long x = word(i + h) ^ word(j + h);
+            if (x != 0) {
+                h += Long.numberOfLeadingZeros(x) / bits;
+                break;
+            }
+            h += symbolsPerWord;
+        }
+        return Math.min(h, max);
+    }
+
+    @Override
+    public void set(long pos, long value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() {
+        buffer.close();
+    }
+
+    private long wordAt(long w) {
+        return UnsafeHelper.UNSAFE.getLong(buffer.address + w * Long.BYTES);
+    }
+
+    private static boolean[] symbols(LongArray text) {
+        boolean[] present = new boolean[256];
+        for (long i = 0; i < text.length(); i++) {
+            present[(int) text.get(i)] = true;
+        }
+        return present;
+    }
+}
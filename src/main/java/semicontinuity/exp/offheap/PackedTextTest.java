@@ -0,0 +1,60 @@
+package semicontinuity.exp.offheap;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PackedTextTest {
+
+    @Test
+    public void remapAndPack() {
+        check(new byte[]{'A', 'C', 'G', 'T'}, 2);
+        check("0123456789abcdef".getBytes(), 4);
+        check("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(), 6);
+    }
+
+    @Test
+    public void lce() {
+        ByteArrayAsLongArrayAdapter input = text("ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTAC".getBytes());
+        PackedText text = PackedText.of(input);
+        Assert.assertEquals(38, text.lce(0, 4));
+        Assert.assertEquals(0, text.lce(0, 1));
+        Assert.assertEquals(42, text.lce(0, 0));
+        Assert.assertTrue(Long.compareUnsigned(text.word(0), text.word(1)) < 0);
+        text.close();
+    }
+
+    private static void check(byte[] alphabet, int expectedBits) {
+        int n = 1001;
+        ByteArrayAsLongArrayAdapter input = randomText(alphabet, n);
+        PackedText text = PackedText.of(input);
+        Assert.assertEquals(alphabet.length, text.alphabetSize());
+        Assert.assertEquals(expectedBits, text.bitsPerSymbol());
+        for (long code = 1; code < alphabet.length; code++) {
+            Assert.assertTrue(text.decode(code - 1) < text.decode(code));
+        }
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(input.get(i), text.decode(text.get(i)));
+        }
+        Assert.assertEquals(0, text.get(n));
+        text.close();
+    }
+
+    private static ByteArrayAsLongArrayAdapter randomText(byte[] alphabet, int n) {
+        Random random = new Random(n);
+        ByteArrayAsLongArrayAdapter input = new ByteArrayAsLongArrayAdapter(n);
+        for (int i = 0; i < n; i++) {
+            input.set(i, alphabet[random.nextInt(alphabet.length)]);
+        }
+        return input;
+    }
+
+    private static ByteArrayAsLongArrayAdapter text(byte[] bytes) {
+        ByteArrayAsLongArrayAdapter input = new ByteArrayAsLongArrayAdapter(bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            input.set(i, bytes[i]);
+        }
+        return input;
+    }
+}
@@ -0,0 +1,33 @@
+package semicontinuity.exp.offheap;
+
+/**
+ * ByteArray, backed by {@link PagedFile}.
+ */
+public class PagedByteArray implements ByteArray {
+    private final PagedFile file;
+
+    @SuppressWarnings("WeakerAccess")
+    public PagedByteArray(PagedFile file) {
+        this.file = file;
+    }
+
+    @Override
+    public byte get(long pos) {
+        return UnsafeHelper.getByte(file.address(pos, false));
+    }
+
+    @Override
+    public void set(long pos, byte value) {
+        UnsafeHelper.setByte(file.address(pos, true), value);
+    }
+
+    @Override
+    public long length() {
+        return file.size();
+    }
+
+    @Override
+    public void close() {
+        file.close();
+    }
+}
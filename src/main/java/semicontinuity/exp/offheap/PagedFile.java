@@ -0,0 +1,214 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * File, accessed page by page through {@link BufferPool} with positional I/O, instead of memory mapping.
+ * Residency is managed by the pool, not by the kernel page cache; with direct I/O, the page cache is bypassed.
+ * <p>
+ * The most recently accessed page stays pinned, so sequential access
+ * goes through a fast path, and the page cannot be evicted while it is in use.
+ */
+public class PagedFile implements Closeable {
+    private static final OpenOption DIRECT = directOption();
+
+    private final BufferPool pool;
+    private final File file;
+    private final FileChannel channel;
+    private final long size;
+    private final int pageSize;
+    private final int[] pageToFrame;
+
+    private long currentPage = -1;
+    private int currentFrame;
+    private long currentAddress;
+    private boolean currentDirty;
+
+    /**
+     * @param size     size in bytes; file is created or extended to this size, if writable
+     * @param writable open for reading and writing
+     * @param direct   use direct I/O, if supported by JVM and file system
+     */
+    @SuppressWarnings("WeakerAccess")
+    public PagedFile(BufferPool pool, File file, long size, boolean writable, boolean direct) {
+        this.pool = pool;
+        this.file = file;
+        this.size = size;
+        this.pageSize = pool.pageSize();
+        long pages = (size + pageSize - 1) / pageSize;
+        if (pages > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many pages: " + pages);
+        }
+        this.pageToFrame = new int[(int) pages];
+        Arrays.fill(pageToFrame, -1);
+        if (writable) {
+            setLength(file, size);
+        }
+        this.channel = open(file, writable, direct);
+    }
+
+    /**
+     * Opens existing file for reading.
+     */
+    public static PagedFile open(BufferPool pool, File file, boolean direct) {
+        return new PagedFile(pool, file, file.length(), false, direct);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return memory address of the byte at offset; valid until the next call
+     */
+    long address(long offset, boolean write) {
+        long page = offset / pageSize;
+        if (page != currentPage) {
+            if (currentPage >= 0) {
+                pool.unpin(currentFrame);
+            }
+            currentFrame = pool.pin(this, (int) page, write);
+            currentPage = page;
+            currentAddress = pool.address(currentFrame) - page * pageSize;
+            currentDirty = write;
+        } else if (write && !currentDirty) {
+            pool.markDirty(currentFrame);
+            currentDirty = true;
+        }
+        return currentAddress + offset;
+    }
+
+    /**
+     * @return number of bytes, that can be accessed starting at offset without crossing page boundary
+     */
+    int remainingInPage(long offset) {
+        return (int) (pageSize - offset % pageSize);
+    }
+
+    /**
+     * Writes back all dirty pages.
+     */
+    public void flush() {
+        pool.flush(this);
+        currentDirty = false;
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (currentPage >= 0) {
+            pool.unpin(currentFrame);
+            currentPage = -1;
+        }
+        pool.release(this);
+        try {
+            // last page is always written in full
+            if (channel.size() > size) {
+                channel.truncate(size);
+            }
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    int frameOf(int page) {
+        return pageToFrame[page];
+    }
+
+    void setFrame(int page, int frame) {
+        pageToFrame[page] = frame;
+        if (frame < 0 && page == currentPage) {
+            currentPage = -1;
+        }
+    }
+
+    void read(int page, ByteBuffer buffer) {
+        buffer.clear();
+        long position = (long) page * pageSize;
+        try {
+            long end = channel.size();
+            while (buffer.hasRemaining() && position + buffer.position() < end) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read page " + page + " of " + file, e);
+        }
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    void write(int page, ByteBuffer buffer) {
+        buffer.clear();
+        long position = (long) page * pageSize;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write page " + page + " of " + file, e);
+        }
+    }
+
+
+    private static void setLength(File file, long size) {
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            if (f.length() < size) {
+                f.setLength(size);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static FileChannel open(File file, boolean writable, boolean direct) {
+        Set<OpenOption> options = new HashSet<>();
+        options.add(StandardOpenOption.READ);
+        if (writable) {
+            options.add(StandardOpenOption.WRITE);
+            options.add(StandardOpenOption.CREATE);
+        }
+        if (direct && DIRECT != null) {
+            options.add(DIRECT);
+            try {
+                return FileChannel.open(file.toPath(), options);
+            } catch (IOException | UnsupportedOperationException e) {
+                // file system does not support direct I/O
+                options.remove(DIRECT);
+            }
+        }
+        try {
+            return FileChannel.open(file.toPath(), options);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(String.valueOf(file), e);
+        }
+    }
+
+    // com.sun.nio.file.ExtendedOpenOption.DIRECT is available since Java 10
+    @SuppressWarnings("unchecked")
+    private static OpenOption directOption() {
+        try {
+            Class<?> clazz = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            return (OpenOption) Enum.valueOf((Class<Enum>) clazz, "DIRECT");
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
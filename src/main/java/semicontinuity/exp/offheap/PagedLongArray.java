@@ -0,0 +1,71 @@
+package semicontinuity.exp.offheap;
+
+/**
+ * LongArray of 5-byte or 8-byte little-endian items (same layouts, as in
+ * {@link OffheapByteArrayAsFiveByteLongArrayLsb} and {@link OffheapByteArrayAsLongArrayLsb}),
+ * backed by {@link PagedFile}.
+ */
+public class PagedLongArray implements LongArray {
+    private final PagedFile file;
+    private final int itemSize;
+
+    /**
+     * @param itemSize 5 or 8
+     */
+    @SuppressWarnings("WeakerAccess")
+    public PagedLongArray(PagedFile file, int itemSize) {
+        if (itemSize != 5 && itemSize != Long.BYTES) {
+            throw new IllegalArgumentException(String.valueOf(itemSize));
+        }
+        this.file = file;
+        this.itemSize = itemSize;
+    }
+
+    @Override
+    public long get(long pos) {
+        long offset = pos * itemSize;
+        if (file.remainingInPage(offset) < itemSize) {
+            // item spans two pages
+            long value = 0;
+            for (int i = 0; i < itemSize; i++) {
+                value |= (UnsafeHelper.getByte(file.address(offset + i, false)) & 0xFFL) << (i * 8);
+            }
+            // sign-extend 5-byte items, like the fast path
+            return itemSize == Long.BYTES ? value : (value << 24) >> 24;
+        }
+        long address = file.address(offset, false);
+        if (itemSize == Long.BYTES) {
+            return UnsafeHelper.UNSAFE.getLong(address);
+        }
+        return (0x00000000FFFFFFFFL & UnsafeHelper.UNSAFE.getInt(address))
+                | (((long) UnsafeHelper.UNSAFE.getByte(address + 4) << 32) & 0xFFFFFFFF00000000L);
+    }
+
+    @Override
+    public void set(long pos, long value) {
+        long offset = pos * itemSize;
+        if (file.remainingInPage(offset) < itemSize) {
+            for (int i = 0; i < itemSize; i++) {
+                UnsafeHelper.setByte(file.address(offset + i, true), (byte) (value >> (i * 8)));
+            }
+            return;
+        }
+        long address = file.address(offset, true);
+        if (itemSize == Long.BYTES) {
+            UnsafeHelper.UNSAFE.putLong(address, value);
+        } else {
+            UnsafeHelper.UNSAFE.putInt(address, (int) value);
+            UnsafeHelper.UNSAFE.putByte(address + 4, (byte) (value >> 32));
+        }
+    }
+
+    @Override
+    public long length() {
+        return file.size() / itemSize;
+    }
+
+    @Override
+    public void close() {
+        file.close();
+    }
+}
@@ -0,0 +1,38 @@
+package semicontinuity.exp.offheap;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PagedLongArrayTest {
+
+    @Test
+    public void writeEvictRead() throws IOException {
+        File file = File.createTempFile("paged", ".bin");
+        file.deleteOnExit();
+        // 2 frames of 4096 bytes: 5-byte items span page boundaries, pages are evicted
+        BufferPool pool = new BufferPool(4096, 2 * 4096);
+        long length = 10_000;
+
+        PagedLongArray a = new PagedLongArray(new PagedFile(pool, file, length * 5, true, true), 5);
+        for (long i = 0; i < length; i++) {
+            a.set(i, i * 1_000_003 - 5000);
+        }
+        for (long i = length - 1; i >= 0; i -= 7) {
+            Assert.assertEquals(i * 1_000_003 - 5000, a.get(i));
+        }
+        a.close();
+        Assert.assertEquals(length * 5, file.length());
+        Assert.assertTrue(pool.evictions() > 0);
+
+        PagedLongArray b = new PagedLongArray(PagedFile.open(pool, file, false), 5);
+        Assert.assertEquals(length, b.length());
+        for (long i = 0; i < length; i++) {
+            Assert.assertEquals(i * 1_000_003 - 5000, b.get(i));
+        }
+        b.close();
+        pool.close();
+    }
+}
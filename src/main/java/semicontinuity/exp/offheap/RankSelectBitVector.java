@@ -0,0 +1,235 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+
+/**
+ * Constant-time rank and select over {@link OffheapBitVector}.
+ * <p>
+ * Rank directory: absolute rank (8 bytes) per 4096-bit super-block,
+ * and rank relative to super-block (2 bytes) per 512-bit block; about 4.7% of the bit vector size.
+ * rank is then computed with at most 7 popcounts.
+ * <p>
+ * Select directory: position of every 4096-th one (and zero).
+ * select narrows the super-block range with the samples, then binary searches super-blocks,
+ * and scans at most 8 blocks and 8 words.
+ * <p>
+ * Directories are rebuilt in memory on construction (single sequential pass), the bit vector itself may be mapped.
+ * The bit vector must not be modified afterwards.
+ */
+public class RankSelectBitVector implements Closeable {
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BLOCKS_PER_SUPER_BLOCK = 8;
+    private static final int WORDS_PER_SUPER_BLOCK = WORDS_PER_BLOCK * BLOCKS_PER_SUPER_BLOCK;
+    private static final int SUPER_BLOCK_BITS = WORDS_PER_SUPER_BLOCK * 64;
+    private static final int BLOCK_BITS = WORDS_PER_BLOCK * 64;
+    private static final int SELECT_SAMPLE_RATE = 4096;
+
+    private final OffheapBitVector bits;
+    private final long wordCount;
+    private final long superBlockCount;
+    private final long ones;
+
+    private final OffheapByteArray superBlockRanks;
+    private final OffheapByteArray blockRanks;
+    private final OffheapByteArray select1Samples;
+    private final OffheapByteArray select0Samples;
+
+    @SuppressWarnings("WeakerAccess")
+    public RankSelectBitVector(OffheapBitVector bits) {
+        this.bits = bits;
+        this.wordCount = bits.wordCount();
+        this.superBlockCount = (wordCount + WORDS_PER_SUPER_BLOCK - 1) / WORDS_PER_SUPER_BLOCK;
+        long blockCount = superBlockCount * BLOCKS_PER_SUPER_BLOCK;
+
+        // one extra entry holds the total
+        this.superBlockRanks = new OffheapByteArray((superBlockCount + 1) * Long.BYTES);
+        this.blockRanks = new OffheapByteArray((blockCount + 1) * Short.BYTES);
+
+        long rank = 0;
+        for (long sb = 0; sb < superBlockCount; sb++) {
+            UnsafeHelper.UNSAFE.putLong(superBlockRanks.address + sb * Long.BYTES, rank);
+            long relative = 0;
+            for (long b = 0; b < BLOCKS_PER_SUPER_BLOCK; b++) {
+                long block = sb * BLOCKS_PER_SUPER_BLOCK + b;
+                UnsafeHelper.UNSAFE.putShort(blockRanks.address + block * Short.BYTES, (short) relative);
+                for (long w = block * WORDS_PER_BLOCK, end = Math.min(w + WORDS_PER_BLOCK, wordCount); w < end; w++) {
+                    relative += Long.bitCount(bits.word(w));
+                }
+            }
+            rank += relative;
+        }
+        UnsafeHelper.UNSAFE.putLong(superBlockRanks.address + superBlockCount * Long.BYTES, rank);
+        UnsafeHelper.UNSAFE.putShort(blockRanks.address + blockCount * Short.BYTES, (short) 0);
+        this.ones = rank;
+
+        long zeroes = bits.length() - ones;
+        this.select1Samples = new OffheapByteArray((ones / SELECT_SAMPLE_RATE + 1) * Long.BYTES);
+        this.select0Samples = new OffheapByteArray((zeroes / SELECT_SAMPLE_RATE + 1) * Long.BYTES);
+        long onesSeen = 0;
+        long zeroesSeen = 0;
+        for (long w = 0; w < wordCount; w++) {
+            long word = bits.word(w);
+            int validBits = (int) Math.min(64, bits.length() - w * 64);
+            int wordOnes = Long.bitCount(word);
+            int wordZeroes = validBits - wordOnes;
+
+            long nextOneSample = (onesSeen + SELECT_SAMPLE_RATE - 1) / SELECT_SAMPLE_RATE * SELECT_SAMPLE_RATE;
+            if (nextOneSample < onesSeen + wordOnes) {
+                long pos = w * 64 + selectInWord(word, (int) (nextOneSample - onesSeen));
+                UnsafeHelper.UNSAFE.putLong(select1Samples.address + nextOneSample / SELECT_SAMPLE_RATE * Long.BYTES, pos);
+            }
+            long nextZeroSample = (zeroesSeen + SELECT_SAMPLE_RATE - 1) / SELECT_SAMPLE_RATE * SELECT_SAMPLE_RATE;
+            if (nextZeroSample < zeroesSeen + wordZeroes) {
+                long pos = w * 64 + selectInWord(~word, (int) (nextZeroSample - zeroesSeen));
+                UnsafeHelper.UNSAFE.putLong(select0Samples.address + nextZeroSample / SELECT_SAMPLE_RATE * Long.BYTES, pos);
+            }
+            onesSeen += wordOnes;
+            zeroesSeen += wordZeroes;
+        }
+    }
+
+    public OffheapBitVector bits() {
+        return bits;
+    }
+
+    public long length() {
+        return bits.length();
+    }
+
+    public boolean get(long pos) {
+        return bits.get(pos);
+    }
+
+    public long ones() {
+        return ones;
+    }
+
+    public long zeroes() {
+        return bits.length() - ones;
+    }
+
+    /**
+     * @return number of ones in [0, pos)
+     */
+    public long rank1(long pos) {
+        long word = pos >>> 6;
+        long block = word / WORDS_PER_BLOCK;
+        long rank = superBlockRank(block / BLOCKS_PER_SUPER_BLOCK) + blockRank(block);
+        for (long w = block * WORDS_PER_BLOCK; w < word; w++) {
+            rank += Long.bitCount(bits.word(w));
+        }
+        int offset = (int) (pos & 63);
+        if (offset != 0) {
+            rank += Long.bitCount(bits.word(word) & ((1L << offset) - 1));
+        }
+        return rank;
+    }
+
+    /**
+     * @return number of zeroes in [0, pos)
+     */
+    public long rank0(long pos) {
+        return pos - rank1(pos);
+    }
+
+    /**
+     * @return position of the one with the given rank (0-based)
+     */
+    public long select1(long rank) {
+        if (rank < 0 || rank >= ones) {
+            throw new IllegalArgumentException(String.valueOf(rank));
+        }
+        long sample = rank / SELECT_SAMPLE_RATE;
+        long lo = UnsafeHelper.UNSAFE.getLong(select1Samples.address + sample * Long.BYTES) / SUPER_BLOCK_BITS;
+        long hi = (sample + 1) * SELECT_SAMPLE_RATE < ones
+                ? UnsafeHelper.UNSAFE.getLong(select1Samples.address + (sample + 1) * Long.BYTES) / SUPER_BLOCK_BITS
+                : superBlockCount - 1;
+        // last super-block in [lo, hi] with superBlockRank <= rank
+        while (lo < hi) {
+            long mid = (lo + hi + 1) >>> 1;
+            if (superBlockRank(mid) <= rank) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        long remaining = rank - superBlockRank(lo);
+        long block = lo * BLOCKS_PER_SUPER_BLOCK;
+        for (long end = block + BLOCKS_PER_SUPER_BLOCK - 1; block < end && blockRank(block + 1) <= remaining; block++) {
+        }
+        remaining -= blockRank(block);
+        for (long w = block * WORDS_PER_BLOCK; ; w++) {
+            long word = bits.word(w);
+            int count = Long.bitCount(word);
+            if (remaining < count) {
+                return w * 64 + selectInWord(word, (int) remaining);
+            }
+            remaining -= count;
+        }
+    }
+
+    /**
+     * @return position of the zero with the given rank (0-based)
+     */
+    public long select0(long rank) {
+        if (rank < 0 || rank >= zeroes()) {
+            throw new IllegalArgumentException(String.valueOf(rank));
+        }
+        long sample = rank / SELECT_SAMPLE_RATE;
+        long lo = UnsafeHelper.UNSAFE.getLong(select0Samples.address + sample * Long.BYTES) / SUPER_BLOCK_BITS;
+        long hi = (sample + 1) * SELECT_SAMPLE_RATE < zeroes()
+                ? UnsafeHelper.UNSAFE.getLong(select0Samples.address + (sample + 1) * Long.BYTES) / SUPER_BLOCK_BITS
+                : superBlockCount - 1;
+        while (lo < hi) {
+            long mid = (lo + hi + 1) >>> 1;
+            if (mid * SUPER_BLOCK_BITS - superBlockRank(mid) <= rank) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        long remaining = rank - (lo * SUPER_BLOCK_BITS - superBlockRank(lo));
+        long block = lo * BLOCKS_PER_SUPER_BLOCK;
+        for (long end = block + BLOCKS_PER_SUPER_BLOCK - 1;
+             block < end && (block + 1 - lo * BLOCKS_PER_SUPER_BLOCK) * BLOCK_BITS - blockRank(block + 1) <= remaining;
+             block++) {
+        }
+        remaining -= (block - lo * BLOCKS_PER_SUPER_BLOCK) * BLOCK_BITS - blockRank(block);
+        for (long w = block * WORDS_PER_BLOCK; ; w++) {
+            long word = ~bits.word(w);
+            int count = Long.bitCount(word);
+            if (remaining < count) {
+                return w * 64 + selectInWord(word, (int) remaining);
+            }
+            remaining -= count;
+        }
+    }
+
+    @Override
+    public void close() {
+        superBlockRanks.close();
+        blockRanks.close();
+        select1Samples.close();
+        select0Samples.close();
+        bits.close();
+    }
+
+
+    private long superBlockRank(long superBlock) {
+        return UnsafeHelper.UNSAFE.getLong(superBlockRanks.address + superBlock * Long.BYTES);
+    }
+
+    private long blockRank(long block) {
+        return UnsafeHelper.UNSAFE.getShort(blockRanks.address + block * Short.BYTES) & 0xFFFF;
+    }
+
+    /**
+     * @return index of the set bit with the given rank within the word
+     */
+    static int selectInWord(long word, int rank) {
+        for (int i = 0; i < rank; i++) {
+            word &= word - 1;
+        }
+        return Long.numberOfTrailingZeros(word);
+    }
+}
@@ -0,0 +1,56 @@
+package semicontinuity.exp.offheap;
+
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RankSelectBitVectorTest {
+
+    @Test
+    public void rankSelect() {
+        check(1);
+        check(64);
+        check(4096);
+        check(100_003);
+    }
+
+    @Test
+    public void sparse() {
+        long length = 1_000_000;
+        RankSelectBitVector v = new RankSelectBitVector(
+                OffheapBitVector.ofPositions(length, LongStream.of(3, 70_000, 999_999).iterator()));
+        Assert.assertEquals(3, v.ones());
+        Assert.assertEquals(70_000, v.select1(1));
+        Assert.assertEquals(999_999, v.select1(2));
+        Assert.assertEquals(2, v.rank1(999_999));
+        Assert.assertEquals(70_002, v.select0(70_000));
+        v.close();
+    }
+
+    private static void check(int length) {
+        Random random = new Random(length);
+        boolean[] expected = new boolean[length];
+        OffheapBitVector bits = new OffheapBitVector(length);
+        for (int i = 0; i < length; i++) {
+            expected[i] = random.nextInt(3) == 0;
+            bits.set(i, expected[i]);
+        }
+        RankSelectBitVector v = new RankSelectBitVector(bits);
+
+        long ones = 0;
+        for (int i = 0; i < length; i++) {
+            Assert.assertEquals(ones, v.rank1(i));
+            if (expected[i]) {
+                Assert.assertEquals(i, v.select1(ones));
+                ones++;
+            } else {
+                Assert.assertEquals(i, v.select0(i - ones));
+            }
+        }
+        Assert.assertEquals(ones, v.rank1(length));
+        Assert.assertEquals(ones, v.ones());
+        v.close();
+    }
+}
@@ -0,0 +1,228 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+
+/**
+ * Compressed bit vector with rank support, as in
+ * <tt>R. Raman, V. Raman, S. S. Rao. Succinct indexable dictionaries with applications to encoding k-ary trees
+ * and multisets. SODA 2002</tt>, with large blocks, as in
+ * <tt>G. Navarro, E. Providel. Fast, small, simple rank/select on bitmaps. SEA 2012</tt>.
+ * <p>
+ * Bits are split into blocks of 63; a block with c ones is stored as its class c (6 bits), and its offset:
+ * index among all C(63, c) blocks of this class (ceil(log2(C(63, c))) bits), so space is close to
+ * zero-order entropy of blocks: about 0.1 bit per bit for runs of equal bits, and 1 bit per bit for random ones.
+ * For every 64 blocks, absolute rank and position of the first offset are sampled (2 longs per 4032 bits).
+ * rank1 and get sum classes of at most 63 blocks, and decode one block, so they are several times slower
+ * than in {@link RankSelectBitVector}.
+ * <p>
+ * Storage is a LongArray (all 64 bits of items are used) with a small header, so it can be persisted in a file,
+ * and opened later.
+ */
+public class RrrBitVector implements Closeable {
+    private static final int BLOCK = 63;
+    private static final int BLOCKS_PER_SAMPLE = 64;
+    private static final int CLASS_BITS = 6;
+    private static final int HEADER = 2;
+    private static final long[][] BINOMIAL = new long[BLOCK + 1][BLOCK + 1];
+    private static final int[] OFFSET_BITS = new int[BLOCK + 1];
+
+    static {
+        for (int n = 0; n <= BLOCK; n++) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+        for (int c = 0; c <= BLOCK; c++) {
+            OFFSET_BITS[c] = 64 - Long.numberOfLeadingZeros(BINOMIAL[BLOCK][c] - 1);
+        }
+    }
+
+    private final LongArray storage;
+    private final long length;
+    private final long ones;
+    private final long classesStart;
+    private final long offsetsStart;
+
+    /**
+     * Opens bit vector, previously built with {@link #build(OffheapBitVector, LongArray)}.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public RrrBitVector(LongArray storage) {
+        this.storage = storage;
+        this.length = storage.get(0);
+        this.ones = storage.get(1);
+        long blocks = blockCount(length);
+        this.classesStart = HEADER + 2 * sampleCount(blocks);
+        this.offsetsStart = classesStart + wordCount(blocks * CLASS_BITS);
+    }
+
+    /**
+     * @return required length of storage for the given bits
+     */
+    public static long storageLength(OffheapBitVector bits) {
+        long blocks = blockCount(bits.length());
+        long offsetBits = 0;
+        for (long b = 0; b < blocks; b++) {
+            offsetBits += OFFSET_BITS[Long.bitCount(block(bits, b))];
+        }
+        // one more word, so that reads of two words do not go out of bounds
+        return HEADER + 2 * sampleCount(blocks) + wordCount(blocks * CLASS_BITS) + wordCount(offsetBits) + 1;
+    }
+
+    /**
+     * Compresses bits into storage of length {@link #storageLength(OffheapBitVector)}.
+     */
+    public static RrrBitVector build(OffheapBitVector bits, LongArray storage) {
+        long length = bits.length();
+        long blocks = blockCount(length);
+        storage.set(0, length);
+        RrrBitVector result = new RrrBitVector(storage);
+        for (long i = HEADER; i < storage.length(); i++) {
+            storage.set(i, 0);
+        }
+        long rank = 0;
+        long offsetPosition = 0;
+        for (long b = 0; b < blocks; b++) {
+            if (b % BLOCKS_PER_SAMPLE == 0) {
+                storage.set(HEADER + 2 * (b / BLOCKS_PER_SAMPLE), rank);
+                storage.set(HEADER + 2 * (b / BLOCKS_PER_SAMPLE) + 1, offsetPosition);
+            }
+            long block = block(bits, b);
+            int c = Long.bitCount(block);
+            result.writeBits(result.classesStart, b * CLASS_BITS, CLASS_BITS, c);
+            result.writeBits(result.offsetsStart, offsetPosition, OFFSET_BITS[c], encode(block, c));
+            rank += c;
+            offsetPosition += OFFSET_BITS[c];
+        }
+        storage.set(1, rank);
+        return new RrrBitVector(storage);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public long ones() {
+        return ones;
+    }
+
+    public boolean get(long pos) {
+        long block = pos / BLOCK;
+        long offsetPosition = storage.get(HEADER + 2 * (block / BLOCKS_PER_SAMPLE) + 1);
+        for (long b = block - block % BLOCKS_PER_SAMPLE; b < block; b++) {
+            offsetPosition += OFFSET_BITS[classOf(b)];
+        }
+        return (decode(offsetPosition, classOf(block)) & (1L << (pos - block * BLOCK))) != 0;
+    }
+
+    /**
+     * @return number of ones in [0, pos)
+     */
+    public long rank1(long pos) {
+        if (pos >= length) {
+            return ones;
+        }
+        long block = pos / BLOCK;
+        long sample = block / BLOCKS_PER_SAMPLE;
+        long rank = storage.get(HEADER + 2 * sample);
+        long offsetPosition = storage.get(HEADER + 2 * sample + 1);
+        for (long b = sample * BLOCKS_PER_SAMPLE; b < block; b++) {
+            int c = classOf(b);
+            rank += c;
+            offsetPosition += OFFSET_BITS[c];
+        }
+        int bits = (int) (pos - block * BLOCK);
+        if (bits != 0) {
+            rank += Long.bitCount(decode(offsetPosition, classOf(block)) & ((1L << bits) - 1));
+        }
+        return rank;
+    }
+
+    /**
+     * @return number of zeroes in [0, pos)
+     */
+    public long rank0(long pos) {
+        return Math.min(pos, length) - rank1(pos);
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+
+
+    private int classOf(long block) {
+        return (int) readBits(classesStart, block * CLASS_BITS, CLASS_BITS);
+    }
+
+    private long decode(long offsetPosition, int c) {
+        if (c == 0 || c == BLOCK) {
+            return c == 0 ? 0 : (1L << BLOCK) - 1;
+        }
+        long offset = readBits(offsetsStart, offsetPosition, OFFSET_BITS[c]);
+        long block = 0;
+        for (int i = BLOCK - 1; c > 0; i--) {
+            if (offset >= BINOMIAL[i][c]) {
+                offset -= BINOMIAL[i][c];
+                block |= 1L << i;
+                c--;
+            }
+        }
+        return block;
+    }
+
+    // index of the block among blocks with c ones, in the combinatorial number system
+    private static long encode(long block, int c) {
+        long offset = 0;
+        for (int i = BLOCK - 1; c > 0; i--) {
+            if ((block & (1L << i)) != 0) {
+                offset += BINOMIAL[i][c];
+                c--;
+            }
+        }
+        return offset;
+    }
+
+    private static long block(OffheapBitVector bits, long b) {
+        long from = b * BLOCK;
+        return bits.getBits(from, (int) Math.min(BLOCK, bits.length() - from));
+    }
+
+    private long readBits(long start, long pos, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        long word = start + (pos >>> 6);
+        int offset = (int) (pos & 63);
+        long value = storage.get(word) >>> offset;
+        if (offset + count > 64) {
+            value |= storage.get(word + 1) << (64 - offset);
+        }
+        return count == 64 ? value : value & ((1L << count) - 1);
+    }
+
+    private void writeBits(long start, long pos, int count, long value) {
+        if (count == 0) {
+            return;
+        }
+        long word = start + (pos >>> 6);
+        int offset = (int) (pos & 63);
+        storage.set(word, storage.get(word) | value << offset);
+        if (offset + count > 64) {
+            storage.set(word + 1, storage.get(word + 1) | value >>> (64 - offset));
+        }
+    }
+
+    private static long blockCount(long length) {
+        return (length + BLOCK - 1) / BLOCK;
+    }
+
+    private static long sampleCount(long blocks) {
+        return (blocks + BLOCKS_PER_SAMPLE - 1) / BLOCKS_PER_SAMPLE;
+    }
+
+    private static long wordCount(long bits) {
+        return (bits + 63) >>> 6;
+    }
+}
@@ -0,0 +1,55 @@
+package semicontinuity.exp.offheap;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RrrBitVectorTest {
+
+    @Test
+    public void rank() {
+        for (int length : new int[] {1, 62, 63, 64, 4032, 4033, 100_003}) {
+            check(length, 3);
+            check(length, 2);
+            check(length, 200);
+        }
+    }
+
+    @Test
+    public void compressesSparseBits() {
+        OffheapBitVector bits = new OffheapBitVector(1_000_000);
+        for (long i = 0; i < bits.length(); i += 1000) {
+            bits.set(i);
+        }
+        long storageLength = RrrBitVector.storageLength(bits);
+        // less than a quarter of the plain bit vector
+        Assert.assertTrue(String.valueOf(storageLength), storageLength * 4 < bits.wordCount());
+        bits.close();
+    }
+
+    private static void check(int length, int density) {
+        Random random = new Random(length + density);
+        boolean[] expected = new boolean[length];
+        OffheapBitVector bits = new OffheapBitVector(length);
+        for (int i = 0; i < length; i++) {
+            expected[i] = random.nextInt(density) == 0;
+            bits.set(i, expected[i]);
+        }
+        RrrBitVector v = RrrBitVector.build(bits, new OffheapByteArrayAsLongArrayLsb(RrrBitVector.storageLength(bits)));
+        bits.close();
+
+        long ones = 0;
+        for (int i = 0; i < length; i++) {
+            Assert.assertEquals(ones, v.rank1(i));
+            Assert.assertEquals(expected[i], v.get(i));
+            if (expected[i]) {
+                ones++;
+            }
+        }
+        Assert.assertEquals(ones, v.rank1(length));
+        Assert.assertEquals(ones, v.ones());
+        Assert.assertEquals(length - ones, v.rank0(length));
+        v.close();
+    }
+}
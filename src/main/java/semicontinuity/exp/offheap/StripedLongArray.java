@@ -0,0 +1,72 @@
+package semicontinuity.exp.offheap;
+
+/**
+ * LongArray, split into fixed-size extents, that are distributed round-robin over several underlying arrays
+ * (typically, memory-mapped files on different disks).
+ * Extent e is stored in stripe (e % stripes), at extent index (e / stripes) of that stripe.
+ * Stripes do not include padding, so only the last extent may be shorter than extentLength.
+ */
+public class StripedLongArray implements LongArray {
+    private final LongArray[] stripes;
+    private final long extentLength;
+    private final long length;
+
+    /**
+     * @param stripes      underlying arrays; a stripe may be null, if no extent is mapped to it
+     * @param extentLength number of items in extent
+     */
+    @SuppressWarnings("WeakerAccess")
+    public StripedLongArray(LongArray[] stripes, long extentLength) {
+        this.stripes = stripes;
+        this.extentLength = extentLength;
+        long length = 0;
+        for (LongArray stripe : stripes) {
+            if (stripe != null) {
+                length += stripe.length();
+            }
+        }
+        this.length = length;
+    }
+
+    /**
+     * @return number of items, stored in the given stripe, for array of the given total length
+     */
+    public static long stripeLength(long length, long extentLength, int stripeCount, int stripe) {
+        long extents = (length + extentLength - 1) / extentLength;
+        long result = 0;
+        for (long e = stripe; e < extents; e += stripeCount) {
+            result += Math.min(extentLength, length - e * extentLength);
+        }
+        return result;
+    }
+
+    @Override
+    public long get(long pos) {
+        long extent = pos / extentLength;
+        return stripes[(int) (extent % stripes.length)].get(localIndex(pos, extent));
+    }
+
+    @Override
+    public void set(long pos, long value) {
+        long extent = pos / extentLength;
+        stripes[(int) (extent % stripes.length)].set(localIndex(pos, extent), value);
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() {
+        for (LongArray stripe : stripes) {
+            if (stripe != null) {
+                stripe.close();
+            }
+        }
+    }
+
+    private long localIndex(long pos, long extent) {
+        return extent / stripes.length * extentLength + pos % extentLength;
+    }
+}
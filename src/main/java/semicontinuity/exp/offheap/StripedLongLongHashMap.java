@@ -0,0 +1,85 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+
+/**
+ * Thread-safe long to long hash map, split into independently locked {@link OffheapLongLongHashMap} stripes.
+ * Stripe is selected by the high bits of the key hash (low bits are used for probing inside a stripe).
+ */
+public class StripedLongLongHashMap implements Closeable {
+    private final OffheapLongLongHashMap[] stripes;
+    private final int shift;
+
+    /**
+     * @param stripeCount number of stripes, rounded up to a power of 2
+     */
+    @SuppressWarnings("WeakerAccess")
+    public StripedLongLongHashMap(long expectedSize, int stripeCount) {
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new OffheapLongLongHashMap[count];
+        this.shift = 64 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new OffheapLongLongHashMap(expectedSize / count + 1);
+        }
+    }
+
+    public long get(long key, long defaultValue) {
+        OffheapLongLongHashMap stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.get(key, defaultValue);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        OffheapLongLongHashMap stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.containsKey(key);
+        }
+    }
+
+    public void put(long key, long value) {
+        OffheapLongLongHashMap stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    public long add(long key, long delta) {
+        OffheapLongLongHashMap stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.add(key, delta);
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (OffheapLongLongHashMap stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Iterates over all entries, locking one stripe at a time.
+     */
+    public void forEach(OffheapLongLongHashMap.EntryConsumer consumer) {
+        for (OffheapLongLongHashMap stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEach(consumer);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (OffheapLongLongHashMap stripe : stripes) {
+            stripe.close();
+        }
+    }
+
+    private OffheapLongLongHashMap stripeFor(long key) {
+        return shift == 64 ? stripes[0] : stripes[(int) (OffheapLongLongHashMap.hash(key) >>> shift)];
+    }
+}
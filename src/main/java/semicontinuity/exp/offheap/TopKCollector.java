@@ -0,0 +1,87 @@
+package semicontinuity.exp.offheap;
+
+import java.io.Closeable;
+
+/**
+ * Collects K (key, payload) entries with the largest keys.
+ * Backed by a min-heap of size K, so that the smallest retained key can be evicted in O(log K).
+ * Collectors filled by different threads can be merged.
+ */
+public class TopKCollector implements Closeable {
+    private final long k;
+    private final OffheapLongHeap heap;
+
+    @SuppressWarnings("WeakerAccess")
+    public TopKCollector(long k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException(String.valueOf(k));
+        }
+        this.k = k;
+        this.heap = new OffheapLongHeap(k, false);
+    }
+
+    /**
+     * @return true if the entry was retained
+     */
+    public boolean offer(long key, long payload) {
+        if (heap.size() < k) {
+            heap.insert(key, payload);
+            return true;
+        }
+        if (key > heap.topKey()) {
+            heap.replaceTop(key, payload);
+            return true;
+        }
+        return false;
+    }
+
+    public void merge(TopKCollector other) {
+        other.heap.forEach(this::offer);
+    }
+
+    public long size() {
+        return heap.size();
+    }
+
+    /**
+     * Smallest key, that is currently retained; entries with smaller keys will be rejected, once the collector is full.
+     */
+    public long threshold() {
+        return heap.size() < k ? Long.MIN_VALUE : heap.topKey();
+    }
+
+    /**
+     * Moves all collected entries to the given arrays, in descending order of keys; the collector becomes empty.
+     * @return number of entries
+     */
+    public int drainTo(long[] keys, long[] payloads) {
+        int count = (int) heap.size();
+        for (int i = count - 1; i >= 0; i--) {
+            keys[i] = heap.topKey();
+            payloads[i] = heap.poll();
+        }
+        return count;
+    }
+
+    /**
+     * Moves all collected entries to the given arrays, in descending order of keys; the collector becomes empty.
+     * @return number of entries
+     */
+    public long drainTo(LongArray keys, LongArray payloads) {
+        long count = heap.size();
+        for (long i = count - 1; i >= 0; i--) {
+            keys.set(i, heap.topKey());
+            payloads.set(i, heap.poll());
+        }
+        return count;
+    }
+
+    long handleCapacity() {
+        return heap.handleCapacity();
+    }
+
+    @Override
+    public void close() {
+        heap.close();
+    }
+}
@@ -1,51 +1,181 @@
 package semicontinuity.exp.suffixarrays;
 
-import java.util.ArrayDeque;
-import java.util.function.Consumer;
+import java.util.Arrays;
 
 import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
 
 /**
  * Implements bottom-up traversal of SA.
  * See https://pdfs.semanticscholar.org/4ca9/ea95a0a9846965e86619e646d9ca36930c18.pdf for details.
+ * <p>
+ * Does not allocate per interval: the stack of open intervals is kept in primitive arrays,
+ * its depth is bounded by the number of distinct LCP values on a path, and intervals are reported
+ * with primitive callbacks.
  */
 public class BottomUpTraversal {
+    private static final int INITIAL_DEPTH = 1024;
 
     private final LongArray sa;
     private final LongArray lcp;
 
+    private long[] values = new long[INITIAL_DEPTH];
+    private long[] froms = new long[INITIAL_DEPTH];
+    private long[] children = new long[INITIAL_DEPTH];
+    // pairs of suffixes of the same document in the subtree (for distinct document counts)
+    private long[] duplicates = new long[INITIAL_DEPTH];
+    private int size;
+
     public BottomUpTraversal(LongArray sa, LongArray lcp) {
         this.sa = sa;
         this.lcp = lcp;
     }
 
-    public void run(Consumer<LcpInterval> callback) {
-        ArrayDeque<LcpInterval> intervals = new ArrayDeque<>();
-        intervals.push(new LcpInterval(0, 0, -1));
+    /**
+     * Receives lcp-intervals in post-order (every interval after its child intervals).
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param lcp      length of the common prefix of suffixes sa[from..to]
+         * @param children number of child intervals (not counting singletons, i.e. suffixes that are leaves):
+         *                 they are the last intervals visited, that were not claimed as children yet,
+         *                 so that an aggregate over the interval is computed in O(1) from a stack of aggregates,
+         *                 where children pop theirs, and the parent pushes its own
+         */
+        void visit(long lcp, long from, long to, long children);
+    }
+
+    /**
+     * Receives lcp-intervals like {@link Visitor},
+     * with the number of distinct documents, in which their suffixes start.
+     */
+    @FunctionalInterface
+    public interface DocumentVisitor {
+        void visit(long lcp, long from, long to, long children, long documents);
+    }
+
+    public void run(Visitor visitor) {
+        run(visitor, 0, sa.length() - 1, -1);
+    }
+
+    /**
+     * Reports intervals with the number of distinct documents of their suffixes, computed as in
+     * <tt>L. C. K. Hui. Color set size problem with applications to string matching. CPM 1992</tt>:
+     * if sa[j] is the previous suffix of the same document as sa[i], the pair is a duplicate
+     * in the smallest interval, that contains both, and in all its ancestors.
+     * That interval is the deepest open one, that starts not after j, and duplicates are summed up the tree,
+     * like children counts; documents = size of interval - duplicates.
+     * Unlike Hui's algorithm, that finds it with a constant-time LCA query, it is found with an exponential search
+     * from the top of the stack, so time is O(n log d), where d is the depth of the stack
+     * (the number of distinct LCP values on a path, small in practice), and no LCA structure is needed.
+     * @param da document array: da[i] is the document of suffix sa[i], in [0, documentCount)
+     */
+    public void run(LongArray da, long documentCount, DocumentVisitor visitor) {
+        try (LongArray last = new OffheapByteArrayAsFiveByteLongArrayLsb(Math.max(1, documentCount))) {
+            for (long d = 0; d < documentCount; d++) {
+                last.set(d, -1);
+            }
+            run(visitor, 0, sa.length() - 1, -1, da, last);
+        }
+    }
+
+    /**
+     * Traverses intervals of suffixes sa[from..to], as if they were the whole suffix array,
+     * and reports only intervals with lcp greater than threshold.
+     */
+    void run(Visitor visitor, long from, long to, long threshold) {
+        run((value, f, t, childCount, documents) -> visitor.visit(value, f, t, childCount),
+                from, to, threshold, null, null);
+    }
+
+    // with document array da, last[d] is the last visited position of document d
+    private void run(DocumentVisitor visitor, long from, long to, long threshold, LongArray da, LongArray last) {
+        size = 0;
+        push(0, from, 0, 0);
+        if (da != null) {
+            last.set(da.get(from), from);
+        }
 
-        for (long i = 1; i < sa.length(); i++) {
+        for (long i = from + 1; i <= to; i++) {
+            long value = lcp.get(i);
             long left = i - 1;
-            while (fixedLcp(i) < intervals.peek().value) {
-                LcpInterval interval = intervals.pop();
-                interval.to = i - 1;
-                callback.accept(interval);
-                left = interval.from;
+            boolean unclaimed = false;
+            while (value < values[size - 1]) {
+                size--;
+                if (values[size] > threshold) {
+                    visitor.visit(values[size], froms[size], i - 1, children[size],
+                            i - froms[size] - duplicates[size]);
+                }
+                left = froms[size];
+                unclaimed = true;
+                if (value <= values[size - 1]) {
+                    // a child of the interval on top
+                    children[size - 1]++;
+                    duplicates[size - 1] += duplicates[size];
+                    unclaimed = false;
+                }
+            }
+
+            if (value > values[size - 1]) {
+                // the last popped interval, if not claimed, is a child of the new one
+                push(value, left, unclaimed ? 1 : 0, unclaimed ? duplicates[size] : 0);
+            }
+
+            if (da != null) {
+                long document = da.get(i);
+                long previous = last.get(document);
+                if (previous >= from) {
+                    duplicates[deepestStartingAtOrBefore(previous)]++;
+                }
+                last.set(document, i);
             }
+        }
 
-            if (fixedLcp(i) > intervals.peek().value) {
-                intervals.push(new LcpInterval(fixedLcp(i), left, -1));
+        while (size > 0) {
+            size--;
+            if (values[size] > threshold) {
+                visitor.visit(values[size], froms[size], to, children[size], to + 1 - froms[size] - duplicates[size]);
+            }
+            if (size > 0) {
+                children[size - 1]++;
+                duplicates[size - 1] += duplicates[size];
             }
         }
+    }
 
-        while (!intervals.isEmpty()) {
-            LcpInterval interval = intervals.pop();
-            interval.to = sa.length() - 1;
-            callback.accept(interval);
+    // open intervals are nested, so their starts do not decrease from the bottom of the stack;
+    // exponential search from the top, as the interval is usually close to it, then binary search
+    private int deepestStartingAtOrBefore(long position) {
+        int hi = size - 1;
+        int lo = hi;
+        for (int step = 1; lo > 0 && froms[lo] > position; step <<= 1) {
+            hi = lo - 1;
+            lo = Math.max(0, lo - step);
         }
+        // froms[lo] <= position (or lo == 0), and the answer is in [lo, hi]
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (froms[mid] <= position) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
     }
 
-    private long fixedLcp(long i) {
-        // at [0] there is -1 in generated LCP table, we need 0
-        return i == 0 ? 0 : lcp.get(i);
+    private void push(long value, long from, long childCount, long duplicateCount) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            froms = Arrays.copyOf(froms, size * 2);
+            children = Arrays.copyOf(children, size * 2);
+            duplicates = Arrays.copyOf(duplicates, size * 2);
+        }
+        values[size] = value;
+        froms[size] = from;
+        children[size] = childCount;
+        duplicates[size] = duplicateCount;
+        size++;
     }
 }
@@ -0,0 +1,78 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class BottomUpTraversalTest {
+
+    @Test
+    public void intervalsAndChildren() {
+        for (int n = 2; n < 200; n += 7) {
+            check(SuffixArraysTest.random(n, 3, 4));
+            check(SuffixArraysTest.random(n, 2, 1));
+        }
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text) {
+        int n = (int) text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+
+        List<long[]> intervals = new ArrayList<>();
+        // number of intervals in the subtree, aggregated with children counts
+        ArrayDeque<Long> aggregates = new ArrayDeque<>();
+        new BottomUpTraversal(sa, lcp).run((value, from, to, children) -> {
+            long subtree = 1;
+            for (long c = 0; c < children; c++) {
+                subtree += aggregates.pop();
+            }
+            aggregates.push(subtree);
+            intervals.add(new long[]{value, from, to, subtree});
+        });
+        Assert.assertEquals(1, aggregates.size());
+
+        // naive: interval [from, to] with value l, if min lcp[from + 1..to] = l, and it cannot be extended
+        List<long[]> expected = new ArrayList<>();
+        for (int from = 0; from < n; from++) {
+            long min = Long.MAX_VALUE;
+            for (int to = from + 1; to < n; to++) {
+                min = Math.min(min, lcp.get(to));
+                boolean leftClosed = from == 0 || lcp.get(from) < min;
+                boolean rightClosed = to == n - 1 || lcp.get(to + 1) < min;
+                if (leftClosed && rightClosed) {
+                    expected.add(new long[]{min, from, to});
+                }
+            }
+        }
+        if (expected.stream().noneMatch(e -> e[0] == 0)) {
+            // the root, when all suffixes start with the same symbol
+            expected.add(new long[]{0, 0, n - 1});
+        }
+        Assert.assertEquals(expected.size(), intervals.size());
+        for (long[] interval : intervals) {
+            long subtree = 0;
+            boolean found = false;
+            for (long[] e : expected) {
+                if (e[0] >= interval[0] && e[1] >= interval[1] && e[2] <= interval[2]) {
+                    subtree++;
+                }
+                found |= e[0] == interval[0] && e[1] == interval[1] && e[2] == interval[2];
+            }
+            Assert.assertTrue(found);
+            Assert.assertEquals(subtree, interval[3]);
+        }
+        sa.close();
+        lcp.close();
+        text.close();
+    }
+}
@@ -0,0 +1,246 @@
+package semicontinuity.exp.suffixarrays;
+
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.LongArrayView;
+import semicontinuity.exp.offheap.OffheapByteArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+import semicontinuity.exp.offheap.UnsafeHelper;
+
+/**
+ * {@link Sais} specialized for byte text and suffix array with 5-byte or 8-byte items, both in off-heap memory.
+ * <p>
+ * The first level of recursion (the text) is sorted with direct memory access by address, without calls
+ * through {@link LongArray} interface, that has many implementations, and so cannot be inlined at hot call sites.
+ * The reduced problem (with integer alphabet, much shorter) is solved with the generic {@link Sais}.
+ * Produces the same suffix array.
+ */
+public final class ByteSais {
+    private static final int ALPHABET_SIZE = 256;
+
+    private final OffheapByteArray saBuffer;
+    private final long text;
+    private final long sa;
+    private final int itemSize;
+
+    private ByteSais(OffheapByteArray text, OffheapByteArray sa, int itemSize) {
+        this.saBuffer = sa;
+        this.text = text.address();
+        this.sa = sa.address();
+        this.itemSize = itemSize;
+    }
+
+    /**
+     * Computes suffix array of text[0..n-1].
+     * @param sa       suffix array storage, at least n * itemSize bytes
+     * @param itemSize 5 or 8, as in {@link OffheapByteArrayAsFiveByteLongArrayLsb}
+     *                 and {@link OffheapByteArrayAsLongArrayLsb}
+     */
+    public static void suffixsort(OffheapByteArray text, long n, OffheapByteArray sa, int itemSize) {
+        if (itemSize != 5 && itemSize != 8) {
+            throw new IllegalArgumentException(String.valueOf(itemSize));
+        }
+        if (n < 0 || n > text.length() || n * itemSize > sa.length()) {
+            throw new IllegalArgumentException(String.valueOf(n));
+        }
+        new ByteSais(text, sa, itemSize).sort(n);
+    }
+
+    private void sort(long n) {
+        if (n <= 1) {
+            if (n == 1) {
+                set(0, 0);
+            }
+            return;
+        }
+        long[] bigC = new long[ALPHABET_SIZE];
+        long[] bigB = new long[ALPHABET_SIZE];
+        long i;
+        long j;
+        long c;
+        long m;
+        long p;
+        long q;
+        long plen;
+        long qlen;
+        long name;
+        long c0;
+        long c1;
+        boolean diff;
+
+        // stage 1: reduce the problem by at least 1/2 sort all the S-substrings
+        getCounts(bigC, n);
+        getBuckets(bigC, bigB, true);
+        UnsafeHelper.UNSAFE.setMemory(sa, n * itemSize, (byte) 0);
+        for (i = n - 2, c = 0, c1 = chr(n - 1); 0 <= i; --i, c1 = c0) {
+            if ((c0 = chr(i)) < (c1 + c)) {
+                c = 1;
+            } else if (c != 0) {
+                set(--bigB[(int) c1], i + 1);
+                c = 0;
+            }
+        }
+        induceSA(bigC, bigB, n);
+
+        // compact all the sorted substrings into the first m items of SA 2*m must be not larger than n (proveable)
+        for (i = 0, m = 0; i < n; ++i) {
+            p = get(i);
+            if ((0 < p) && (chr(p - 1) > (c0 = chr(p)))) {
+                for (j = p + 1; (j < n) && (c0 == (c1 = chr(j))); ++j) {
+                }
+                if ((j < n) && (c0 < c1)) {
+                    set(m++, p);
+                }
+            }
+        }
+        j = m + (n >> 1);
+        for (i = m; i < j; ++i) {
+            set(i, 0);
+        } // init the name array buffer
+        // store the length of all substrings
+        for (i = n - 2, j = n, c = 0, c1 = chr(n - 1); 0 <= i; --i, c1 = c0) {
+            if ((c0 = chr(i)) < (c1 + c)) {
+                c = 1;
+            } else if (c != 0) {
+                set(m + ((i + 1) >> 1), j - i - 1);
+                j = i + 1;
+                c = 0;
+            }
+        }
+        // find the lexicographic names of all substrings
+        for (i = 0, name = 0, q = n, qlen = 0; i < m; ++i) {
+            p = get(i);
+            plen = get(m + (p >> 1));
+            diff = true;
+            if (plen == qlen) {
+                for (j = 0; (j < plen) && (chr(p + j) == chr(q + j)); ++j) {
+                }
+                if (j == plen) {
+                    diff = false;
+                }
+            }
+            if (diff) {
+                ++name;
+                q = p;
+                qlen = plen;
+            }
+            set(m + (p >> 1), name);
+        }
+
+        // stage 2: solve the reduced problem recurse if names are not yet unique
+        if (name < m) {
+            for (i = m + (n >> 1) - 1, j = n - 1; m <= i; --i) {
+                if (get(i) != 0) {
+                    set(j--, get(i) - 1);
+                }
+            }
+            // generic path for the reduced problem; not closed, storage is owned by the caller
+            LongArray generic = itemSize == 5
+                    ? new OffheapByteArrayAsFiveByteLongArrayLsb(saBuffer)
+                    : new OffheapByteArrayAsLongArrayLsb(saBuffer);
+            Sais.saIs(new LongArrayView(generic, n - m), generic, n - m * 2, m, name, false);
+            for (i = n - 2, j = m * 2 - 1, c = 0, c1 = chr(n - 1); 0 <= i; --i, c1 = c0) {
+                if ((c0 = chr(i)) < (c1 + c)) {
+                    c = 1;
+                } else if (c != 0) {
+                    set(j--, i + 1);
+                    c = 0;
+                } // get p1
+            }
+            for (i = 0; i < m; ++i) {
+                set(i, get(get(i) + m));
+            } // get index
+        }
+
+        // stage 3: induce the result for the original problem
+        // put all left-most S characters into their buckets
+        getCounts(bigC, n);
+        getBuckets(bigC, bigB, true); // find ends of buckets
+        for (i = m; i < n; ++i) {
+            set(i, 0);
+        } // init SA[m..n-1]
+        for (i = m - 1; 0 <= i; --i) {
+            j = get(i);
+            set(i, 0);
+            set(--bigB[(int) chr(j)], j);
+        }
+        induceSA(bigC, bigB, n);
+    }
+
+    private void getCounts(long[] bigC, long n) {
+        for (int i = 0; i < ALPHABET_SIZE; ++i) {
+            bigC[i] = 0;
+        }
+        for (long i = 0; i < n; ++i) {
+            ++bigC[(int) chr(i)];
+        }
+    }
+
+    private static void getBuckets(long[] bigC, long[] bigB, boolean end) {
+        long sum = 0;
+        for (int i = 0; i < ALPHABET_SIZE; ++i) {
+            sum += bigC[i];
+            bigB[i] = end ? sum : sum - bigC[i];
+        }
+    }
+
+    private void induceSA(long[] bigC, long[] bigB, long n) {
+        long b;
+        long i;
+        long j;
+        long c0;
+        long c1;
+        // compute SAl
+        getBuckets(bigC, bigB, false); // find starts of buckets
+        j = n - 1;
+        b = bigB[(int) (c1 = chr(j))];
+        set(b++, ((0 < j) && (chr(j - 1) < c1)) ? ~j : j);
+        for (i = 0; i < n; ++i) {
+            j = get(i);
+            set(i, ~j);
+            if (0 < j) {
+                if ((c0 = chr(--j)) != c1) {
+                    bigB[(int) c1] = b;
+                    b = bigB[(int) (c1 = c0)];
+                }
+                set(b++, ((0 < j) && (chr(j - 1) < c1)) ? ~j : j);
+            }
+        }
+        // compute SAs
+        getBuckets(bigC, bigB, true); // find ends of buckets
+        for (i = n - 1, b = bigB[(int) (c1 = 0)]; 0 <= i; --i) {
+            if (0 < (j = get(i))) {
+                if ((c0 = chr(--j)) != c1) {
+                    bigB[(int) c1] = b;
+                    b = bigB[(int) (c1 = c0)];
+                }
+                set(--b, ((j == 0) || (chr(j - 1) > c1)) ? ~j : j);
+            } else {
+                set(i, ~j);
+            }
+        }
+    }
+
+    private long chr(long i) {
+        return UnsafeHelper.UNSAFE.getByte(text + i) & 0xFFL;
+    }
+
+    private long get(long i) {
+        long address = sa + i * itemSize;
+        if (itemSize == 8) {
+            return UnsafeHelper.UNSAFE.getLong(address);
+        }
+        // sign-extended, like OffheapByteArrayAsFiveByteLongArrayLsb
+        return (UnsafeHelper.UNSAFE.getInt(address) & 0xFFFFFFFFL) | ((long) UnsafeHelper.UNSAFE.getByte(address + 4) << 32);
+    }
+
+    private void set(long i, long value) {
+        long address = sa + i * itemSize;
+        if (itemSize == 8) {
+            UnsafeHelper.UNSAFE.putLong(address, value);
+        } else {
+            UnsafeHelper.UNSAFE.putInt(address, (int) value);
+            UnsafeHelper.UNSAFE.putByte(address + 4, (byte) (value >> 32));
+        }
+    }
+}
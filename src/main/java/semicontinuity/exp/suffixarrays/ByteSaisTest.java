@@ -0,0 +1,58 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+
+public class ByteSaisTest {
+
+    @Test
+    public void sameAsSais() {
+        for (int itemSize : new int[]{5, 8}) {
+            check(random(10000, 256, 1), itemSize);
+            check(random(10000, 2, 1), itemSize);
+            check(random(10000, 4, 300), itemSize);
+            for (int n = 1; n < 20; n++) {
+                check(random(n, 3, 2), itemSize);
+            }
+        }
+    }
+
+    private static void check(OffheapByteArray bytes, int itemSize) {
+        long n = bytes.length();
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(bytes, 0);
+        LongArray expected = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, expected, n, 256);
+
+        OffheapByteArray storage = new OffheapByteArray(n * itemSize);
+        ByteSais.suffixsort(bytes, n, storage, itemSize);
+        LongArray actual = itemSize == 5
+                ? new OffheapByteArrayAsFiveByteLongArrayLsb(storage)
+                : new OffheapByteArrayAsLongArrayLsb(storage);
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(expected.get(i), actual.get(i));
+        }
+        expected.close();
+        actual.close();
+        text.close();
+    }
+
+    // random text, with repeats of given length, if it is greater than 1
+    private static OffheapByteArray random(int n, int alphabetSize, int repeatLength) {
+        Random random = new Random(n + alphabetSize);
+        OffheapByteArray bytes = new OffheapByteArray(n);
+        for (int i = 0; i < n; i++) {
+            bytes.set(i, i >= repeatLength && random.nextInt(50) != 0
+                    ? bytes.get(i - repeatLength)
+                    : (byte) random.nextInt(alphabetSize));
+        }
+        return bytes;
+    }
+}
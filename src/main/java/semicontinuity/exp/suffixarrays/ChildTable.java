@@ -0,0 +1,93 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Arrays;
+
+import semicontinuity.exp.offheap.LongArray;
+
+/**
+ * Child table of enhanced suffix array, that makes it possible to find child intervals of an lcp-interval:
+ * <tt>M. I. Abouelhoda, S. Kurtz, E. Ohlebusch. Replacing suffix trees with enhanced suffix arrays.
+ * Journal of Discrete Algorithms 2 (2004) 53–86.</tt>
+ * <p>
+ * Three arrays up, down and nextLIndex are stored in one array cld of n items (lcp[0] = lcp[n] = -1):
+ * <ul>
+ *     <li>cld[i] = up[i + 1], if lcp[i] &gt; lcp[i + 1] (then nextLIndex[i] and down[i] are not defined)</li>
+ *     <li>otherwise, cld[i] = nextLIndex[i], if defined (then down[i] is not needed)</li>
+ *     <li>otherwise, cld[i] = down[i]</li>
+ * </ul>
+ * See {@link TopDownTraversal} for queries.
+ */
+public final class ChildTable {
+    private ChildTable() {
+    }
+
+    /**
+     * Builds child table with two sequential scans of LCP array, and a stack of positions with increasing LCP.
+     * @param lcp LCP array, lcp[0] = -1
+     * @param cld child table of lcp.length() items
+     */
+    public static void build(LongArray lcp, LongArray cld) {
+        long n = lcp.length();
+        Stack stack = new Stack();
+
+        // up and down
+        stack.push(0, -1);
+        long last = -1;
+        long lastValue = 0;
+        for (long k = 1; k <= n; k++) {
+            long value = k < n ? lcp.get(k) : -1;
+            while (value < stack.value()) {
+                stack.size--;
+                last = stack.positions[stack.size];
+                lastValue = stack.values[stack.size];
+                if (value <= stack.value() && stack.value() != lastValue) {
+                    cld.set(stack.position(), last);
+                }
+            }
+            if (last != -1) {
+                cld.set(k - 1, last);
+                last = -1;
+            }
+            stack.push(k, value);
+        }
+
+        // nextLIndex, overwrites down
+        stack.size = 0;
+        stack.push(0, -1);
+        for (long k = 1; k < n; k++) {
+            long value = lcp.get(k);
+            while (value < stack.value()) {
+                stack.size--;
+            }
+            if (value == stack.value()) {
+                cld.set(stack.position(), k);
+                stack.size--;
+            }
+            stack.push(k, value);
+        }
+    }
+
+
+    private static class Stack {
+        long[] positions = new long[1024];
+        long[] values = new long[1024];
+        int size;
+
+        long position() {
+            return positions[size - 1];
+        }
+
+        long value() {
+            return values[size - 1];
+        }
+
+        void push(long position, long value) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            positions[size] = position;
+            values[size++] = value;
+        }
+    }
+}
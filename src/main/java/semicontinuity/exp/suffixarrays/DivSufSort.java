@@ -1,5 +1,11 @@
 package semicontinuity.exp.suffixarrays;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import semicontinuity.exp.offheap.LongArray;
 
 /**
@@ -17,6 +23,11 @@ import semicontinuity.exp.offheap.LongArray;
  * <p>
  * The implementation of this algorithm makes some assumptions about the input. See
  * {@link #buildSuffixArray(LongArray, long, long, LongArray)} for details.
+ * <p>
+ * In multi-threaded mode (like OpenMP build of libdivsufsort), type B* substrings of different (c0, c1) buckets
+ * are sorted concurrently, every worker with its own part of the free space of sa as a merge buffer;
+ * in the final left-to-right pass, predecessor symbols of the next block of sa are fetched by worker threads.
+ * Text and suffix array must then allow concurrent access to different positions.
  */
 public final class DivSufSort {
 
@@ -28,6 +39,9 @@ public final class DivSufSort {
     private static final int SS_SMERGE_STACKSIZE = 32;
     private static final int TR_STACKSIZE = 64;
     private static final int TR_INSERTIONSORT_THRESHOLD = 8;
+    // marks a slot of a prepared block, that must be looked up by the main thread
+    private static final long NOT_PREPARED = Long.MIN_VALUE;
+    private static final int PREFETCH_BLOCK_SIZE = 1 << 18;
 
     private static final int[] sqqTable = {
             0, 16, 22, 27, 32, 35, 39, 42, 45, 48, 50, 53, 55, 57, 59, 61, 64, 65, 67, 69,
@@ -65,6 +79,8 @@ public final class DivSufSort {
     private final int alphabetSize;
     private final int bucketASize;
     private final int bucketBSize;
+    private final int threads;
+    private ForkJoinPool pool;
     private LongArray sa;
     private LongArray t;
     private long start;
@@ -128,14 +144,42 @@ public final class DivSufSort {
         }
     }
 
+    // suffixes of a block of sa and their predecessors, fetched ahead of the scan
+    private static final class PreparedBlock {
+        final long[] values;
+        final long[] predecessors;
+        final List<Future<?>> tasks = new ArrayList<>();
+
+        PreparedBlock(int size) {
+            this.values = new long[size];
+            this.predecessors = new long[size];
+        }
+
+        void await() {
+            for (Future<?> task : tasks) {
+                Tasks.join(task);
+            }
+        }
+    }
+
     public DivSufSort() {
-        alphabetSize = DEFAULT_ALPHABET_SIZE;
-        bucketASize = alphabetSize;
-        bucketBSize = alphabetSize * alphabetSize;
+        this(DEFAULT_ALPHABET_SIZE);
     }
 
     public DivSufSort(int alphabetSize) {
+        this(alphabetSize, 1);
+    }
+
+    /**
+     * @param threads number of threads; with 1, everything runs in the calling thread
+     */
+    @SuppressWarnings("WeakerAccess")
+    public DivSufSort(int alphabetSize, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(String.valueOf(threads));
+        }
         this.alphabetSize = alphabetSize;
+        this.threads = threads;
         bucketASize = this.alphabetSize;
         bucketBSize = this.alphabetSize * this.alphabetSize;
     }
@@ -165,9 +209,19 @@ public final class DivSufSort {
         long[] bucketA = new long[bucketASize];
         long[] bucketB = new long[bucketBSize];
         this.start = start;
-        /* Suffixsort. */
-        long m = sortTypeBstar(bucketA, bucketB, length);
-        constructSuffixArray(bucketA, bucketB, length, m);
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+        }
+        try {
+            /* Suffixsort. */
+            long m = sortTypeBstar(bucketA, bucketB, length);
+            constructSuffixArray(bucketA, bucketB, length, m);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
         return sa;
     }
 
@@ -224,6 +278,10 @@ public final class DivSufSort {
          */
         k = bucketA[c2 = (int) t.get(start + n - 1)];
         sa.set(k++, ((int) t.get(start + n - 2) < c2) ? ~(n - 1) : (n - 1));
+        if (pool != null) {
+            constructSuffixArrayPrefetched(bucketA, n, c2, k);
+            return;
+        }
         /* Scan the suffix array from left to right. */
         for (i = 0, j = n; i < j; ++i) {
             if (0 < (s = sa.get(i))) {
@@ -246,6 +304,74 @@ public final class DivSufSort {
         }
     }
 
+    /**
+     * Left-to-right pass of {@link #constructSuffixArray(long[], long[], long, long)}, with symbols of predecessors
+     * of the next block of suffixes fetched on the pool, while the current block is scanned.
+     * Entries of the next block, written after it was prepared, are resolved in place.
+     */
+    private void constructSuffixArrayPrefetched(long[] bucketA, long n, int c2, long k) {
+        int size = (int) Math.min(PREFETCH_BLOCK_SIZE, n);
+        PreparedBlock current = new PreparedBlock(size);
+        PreparedBlock next = new PreparedBlock(size);
+        prepare(current, n, 0, size);
+        for (long from = 0; from < n; from += size) {
+            long to = Math.min(n, from + size);
+            current.await();
+            if (to < n) {
+                prepare(next, n, to, Math.min(n, to + size));
+            }
+            for (long i = from; i < to; ++i) {
+                long s = sa.get(i);
+                if (0 < s) {
+                    int slot = (int) (i - from);
+                    long predecessor = s == current.values[slot] ? current.predecessors[slot] : predecessor(s);
+                    int c0 = (int) (predecessor >> 1);
+                    s = (predecessor & 1) != 0 ? ~(s - 1) : s - 1;
+                    if (c0 != c2) {
+                        bucketA[c2] = k;
+                        k = bucketA[c2 = c0];
+                    }
+                    sa.set(k++, s);
+                } else {
+                    sa.set(i, ~s);
+                }
+            }
+            PreparedBlock swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    // symbol t[s - 1] of the predecessor of suffix s > 0, shifted left, and 1 if it should be marked
+    private long predecessor(long s) {
+        long c0 = t.get(start + s - 1);
+        return (c0 << 1) | (s == 1 || t.get(start + s - 2) < c0 ? 1 : 0);
+    }
+
+    // Values of sa in the block can be written by the main thread concurrently, and reads of them are not atomic
+    // (e.g. in 5-byte arrays), so only values in the range of suffixes are looked up,
+    // and the main thread rejects the ones, that differ from the final values.
+    private void prepare(PreparedBlock block, long n, long from, long to) {
+        block.tasks.clear();
+        long piece = (to - from + threads - 1) / threads;
+        for (long first = from; first < to; first += piece) {
+            long pieceFrom = first;
+            long pieceTo = Math.min(to, first + piece);
+            block.tasks.add(pool.submit(() -> {
+                for (long i = pieceFrom; i < pieceTo; ++i) {
+                    long s = sa.get(i);
+                    int slot = (int) (i - from);
+                    if (0 < s && s <= n) {
+                        block.values[slot] = s;
+                        block.predecessors[slot] = predecessor(s);
+                    } else {
+                        block.values[slot] = NOT_PREPARED;
+                    }
+                }
+            }));
+        }
+    }
+
     private long sortTypeBstar(long[] bucketA, long[] bucketB, long n) {
         long paB;
         long isaB;
@@ -322,11 +448,15 @@ public final class DivSufSort {
             buf = m; // sa
             bufsize = n - (2 * m);
 
-            for (c0 = alphabetSize - 2, j = m; 0 < j; --c0) {
-                for (c1 = alphabetSize - 1; c0 < c1; j = i, --c1) {
-                    i = bucketB[c0 * alphabetSize + c1];
-                    if (1 < (j - i)) {
-                        ssSort(paB, i, j, buf, bufsize, 2, n, sa.get(i) == (m - 1));
+            if (pool != null) {
+                ssSortBuckets(bucketB, paB, buf, bufsize, n, m);
+            } else {
+                for (c0 = alphabetSize - 2, j = m; 0 < j; --c0) {
+                    for (c1 = alphabetSize - 1; c0 < c1; j = i, --c1) {
+                        i = bucketB[c0 * alphabetSize + c1];
+                        if (1 < (j - i)) {
+                            ssSort(paB, i, j, buf, bufsize, 2, n, sa.get(i) == (m - 1));
+                        }
                     }
                 }
             }
@@ -391,6 +521,37 @@ public final class DivSufSort {
         return m;
     }
 
+    /**
+     * Sorts type B* substrings of all (c0, c1) buckets on the pool.
+     * Buckets are disjoint ranges of sa, so they are sorted independently;
+     * the buffer is split between workers.
+     */
+    private void ssSortBuckets(long[] bucketB, long paB, long buf, long bufsize, long n, long m) {
+        // {first, last, lastsuffix}, in the order of the sequential version
+        List<long[]> buckets = new ArrayList<>();
+        long i;
+        long j = m;
+        for (int c0 = alphabetSize - 2; 0 < j; --c0) {
+            for (int c1 = alphabetSize - 1; c0 < c1; j = i, --c1) {
+                i = bucketB[c0 * alphabetSize + c1];
+                if (1 < (j - i)) {
+                    buckets.add(new long[]{i, j, sa.get(i) == (m - 1) ? 1 : 0});
+                }
+            }
+        }
+
+        long workerBufsize = bufsize / threads;
+        AtomicInteger next = new AtomicInteger();
+        Tasks.parallel(pool, threads, w -> {
+            long workerBuf = buf + w * workerBufsize;
+            int b;
+            while ((b = next.getAndIncrement()) < buckets.size()) {
+                long[] bucket = buckets.get(b);
+                ssSort(paB, bucket[0], bucket[1], workerBuf, workerBufsize, 2, n, bucket[2] != 0);
+            }
+        });
+    }
+
     private void ssSort(
             long pa, long first, long last, long buf, long bufsize, long depth, long n, boolean lastsuffix)
     {
@@ -0,0 +1,50 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class DivSufSortTest {
+
+    @Test
+    public void multiThreadedSameAsSingleThreaded() {
+        for (int alphabetSize : new int[]{2, 4, 256}) {
+            check(random(20000, alphabetSize, 1));
+        }
+        check(random(20000, 3, 50));
+        check(random(100, 256, 1));
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text) {
+        long n = text.length();
+        LongArray expected = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        new DivSufSort(256).buildSuffixArray(text, 0, n, expected);
+        LongArray actual = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        new DivSufSort(256, 4).buildSuffixArray(text, 0, n, actual);
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(expected.get(i), actual.get(i));
+        }
+        expected.close();
+        actual.close();
+        text.close();
+    }
+
+    // text with runs of equal symbols, if runLength > 1
+    private static ByteArrayAsLongArrayAdapter random(int n, int alphabetSize, int runLength) {
+        Random random = new Random(n + alphabetSize);
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(n);
+        long symbol = 0;
+        for (int i = 0; i < n; i++) {
+            if (i % runLength == 0) {
+                symbol = random.nextInt(alphabetSize);
+            }
+            text.set(i, symbol);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,90 @@
+package semicontinuity.exp.suffixarrays;
+
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapBitVector;
+import semicontinuity.exp.offheap.RankSelectBitVector;
+
+/**
+ * Generalized suffix array of documents, concatenated with a separator symbol:
+ * document array (document of every suffix), and LCP array, where common prefixes do not extend over separators.
+ * <p>
+ * The suffix array of the concatenation is used as is: suffixes, that differ only after a separator,
+ * are in the same place as with distinct separators, up to order among themselves,
+ * so capping every LCP value at the distance to the next separator gives LCP array of the generalized suffix array.
+ * Then LCP-intervals are common substrings of documents, and the number of distinct documents
+ * is reported by {@link BottomUpTraversal#run(LongArray, long, BottomUpTraversal.DocumentVisitor)}.
+ * <p>
+ * Separator belongs to the document, that it ends.
+ */
+public final class DocumentArray {
+    private DocumentArray() {
+    }
+
+    /**
+     * @return bit vector of separator positions in text, with rank and select support
+     */
+    public static RankSelectBitVector separators(LongArray text, long separator) {
+        return new RankSelectBitVector(OffheapBitVector.of(text, c -> c == separator));
+    }
+
+    /**
+     * Computes document array: da[i] = number of separators before suffix sa[i].
+     * @return number of documents (number of separators + 1)
+     */
+    public static long build(LongArray sa, RankSelectBitVector separators, LongArray da) {
+        for (long i = 0; i < sa.length(); i++) {
+            da.set(i, separators.rank1(sa.get(i)));
+        }
+        return separators.ones() + 1;
+    }
+
+    /**
+     * Caps LCP values in place, so that common prefixes end before separators.
+     */
+    public static void capLcp(LongArray sa, LongArray lcp, RankSelectBitVector separators) {
+        for (long i = 1; i < sa.length(); i++) {
+            long value = lcp.get(i);
+            long capped = cap(sa, separators, i, value);
+            if (capped != value) {
+                lcp.set(i, capped);
+            }
+        }
+    }
+
+    /**
+     * @return read-only view of LCP values, capped as in {@link #capLcp(LongArray, LongArray, RankSelectBitVector)},
+     * without a copy of lcp (every read of item i also reads sa[i], and ranks and selects a separator)
+     */
+    public static LongArray cappedLcp(LongArray sa, LongArray lcp, RankSelectBitVector separators) {
+        return new LongArray() {
+            @Override
+            public long get(long pos) {
+                long value = lcp.get(pos);
+                return pos == 0 ? value : cap(sa, separators, pos, value);
+            }
+
+            @Override
+            public void set(long pos, long value) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public long length() {
+                return lcp.length();
+            }
+
+            @Override
+            public void close() {
+                // do nothing
+            }
+        };
+    }
+
+    private static long cap(LongArray sa, RankSelectBitVector separators, long i, long value) {
+        long n = sa.length();
+        long position = sa.get(i);
+        long rank = separators.rank1(position);
+        long next = rank < separators.ones() ? separators.select1(rank) : n;
+        return Math.min(value, next - position);
+    }
+}
@@ -0,0 +1,87 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.offheap.RankSelectBitVector;
+
+public class DocumentArrayTest {
+    private static final long SEPARATOR = 0;
+
+    @Test
+    public void documentsOfIntervals() {
+        for (int n = 1; n < 300; n += 11) {
+            check(SuffixArraysTest.random(n, 4, 5));
+            check(SuffixArraysTest.random(n, 3, 1));
+        }
+        check(SuffixArraysTest.random(20000, 5, 40));
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text) {
+        int n = (int) text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        RankSelectBitVector separators = DocumentArray.separators(text, SEPARATOR);
+        LongArray da = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        long documents = DocumentArray.build(sa, separators, da);
+        LongArray capped = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        LongArray view = DocumentArray.cappedLcp(sa, lcp, separators);
+        for (int i = 0; i < n; i++) {
+            capped.set(i, view.get(i));
+        }
+        DocumentArray.capLcp(sa, lcp, separators);
+
+        long[] documentOf = new long[n];
+        for (int p = 0, d = 0; p < n; p++) {
+            documentOf[p] = d;
+            if (text.get(p) == SEPARATOR) {
+                d++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            Assert.assertEquals(documentOf[(int) sa.get(i)], da.get(i));
+            Assert.assertTrue(da.get(i) < documents);
+            if (i > 0) {
+                long p = sa.get(i - 1);
+                long q = sa.get(i);
+                long h = 0;
+                while (p + h < n && q + h < n && text.get(p + h) == text.get(q + h) && text.get(p + h) != SEPARATOR) {
+                    h++;
+                }
+                Assert.assertEquals(h, lcp.get(i));
+                Assert.assertEquals(h, capped.get(i));
+            }
+        }
+
+        List<String> plain = new ArrayList<>();
+        new BottomUpTraversal(sa, lcp).run((value, from, to, children) ->
+                plain.add(value + " " + from + " " + to + " " + children));
+        List<String> withDocuments = new ArrayList<>();
+        new BottomUpTraversal(sa, lcp).run(da, documents, (value, from, to, children, count) -> {
+            withDocuments.add(value + " " + from + " " + to + " " + children);
+            Set<Long> distinct = new HashSet<>();
+            for (long i = from; i <= to; i++) {
+                distinct.add(da.get(i));
+            }
+            Assert.assertEquals(distinct.size(), count);
+        });
+        Assert.assertEquals(plain, withDocuments);
+
+        da.close();
+        capped.close();
+        separators.close();
+        lcp.close();
+        sa.close();
+        text.close();
+    }
+}
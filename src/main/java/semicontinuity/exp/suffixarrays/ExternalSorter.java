@@ -0,0 +1,307 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * External merge sort of records (k1, k2, v) of three longs, ordered by k1, then k2, then v, compared unsigned.
+ * Records are collected into sorted runs of limited size, that are written to scratch files,
+ * and merged (in several passes, if there are too many runs) into the output file.
+ */
+class ExternalSorter {
+    static final int RECORD_BYTES = 3 * Long.BYTES;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_FAN_IN = 256;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final File dir;
+    private final int fanIn;
+    private final long[] buffer;
+    private int size;
+    private final List<File> runs = new ArrayList<>();
+
+    /**
+     * @param dir      directory for scratch files
+     * @param runBytes memory for a run of records
+     * @param fanIn    maximal number of runs, merged at once
+     */
+    ExternalSorter(File dir, long runBytes, int fanIn) {
+        long records = Math.min(runBytes / RECORD_BYTES, (Integer.MAX_VALUE - 8) / 3);
+        if (records < 2 || fanIn < 2) {
+            throw new IllegalArgumentException(runBytes + ", " + fanIn);
+        }
+        this.dir = dir;
+        this.fanIn = fanIn;
+        this.buffer = new long[(int) records * 3];
+    }
+
+    /**
+     * @param dir      directory for scratch files
+     * @param ramBytes memory budget: 3/4 for a run of records, and the rest for buffers of the runs, merged at once
+     */
+    static ExternalSorter of(File dir, long ramBytes) {
+        return new ExternalSorter(
+                dir, ramBytes / 4 * 3, (int) Math.max(2, Math.min(MAX_FAN_IN, ramBytes / 4 / (2 * IO_BUFFER_SIZE))));
+    }
+
+    void add(long k1, long k2, long v) {
+        if (size == buffer.length) {
+            spill();
+        }
+        buffer[size++] = k1;
+        buffer[size++] = k2;
+        buffer[size++] = v;
+    }
+
+    /**
+     * Sorts all added records into the output file, and resets the sorter.
+     */
+    void sortTo(File output) {
+        if (size > 0 || runs.isEmpty()) {
+            spill();
+        }
+        while (runs.size() > fanIn) {
+            List<File> merged = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += fanIn) {
+                List<File> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+                File run = scratchFile();
+                merge(group, run);
+                merged.add(run);
+            }
+            runs.clear();
+            runs.addAll(merged);
+        }
+        merge(runs, output);
+        runs.clear();
+    }
+
+    File scratchFile() {
+        try {
+            File file = File.createTempFile("sort", ".tmp", dir);
+            file.deleteOnExit();
+            return file;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void spill() {
+        sort(buffer, 0, size / 3);
+        File run = scratchFile();
+        try (Writer writer = new Writer(run)) {
+            for (int i = 0; i < size; i += 3) {
+                writer.write(buffer[i], buffer[i + 1], buffer[i + 2]);
+            }
+        }
+        runs.add(run);
+        size = 0;
+    }
+
+    private static void merge(List<File> inputs, File output) {
+        if (inputs.size() == 1) {
+            //noinspection ResultOfMethodCallIgnored
+            output.delete();
+            if (!inputs.get(0).renameTo(output)) {
+                copy(inputs.get(0), output);
+            }
+            return;
+        }
+        PriorityQueue<Reader> queue = new PriorityQueue<>(inputs.size(), ExternalSorter::compare);
+        try (Writer writer = new Writer(output)) {
+            for (File input : inputs) {
+                Reader reader = new Reader(input);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+            while (!queue.isEmpty()) {
+                Reader reader = queue.poll();
+                writer.write(reader.k1, reader.k2, reader.v);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        }
+        for (File input : inputs) {
+            //noinspection ResultOfMethodCallIgnored
+            input.delete();
+        }
+    }
+
+    private static void copy(File from, File to) {
+        try (Reader reader = new Reader(from); Writer writer = new Writer(to)) {
+            while (reader.next()) {
+                writer.write(reader.k1, reader.k2, reader.v);
+            }
+        }
+        //noinspection ResultOfMethodCallIgnored
+        from.delete();
+    }
+
+    private static int compare(Reader a, Reader b) {
+        int c = Long.compareUnsigned(a.k1, b.k1);
+        if (c == 0) {
+            c = Long.compareUnsigned(a.k2, b.k2);
+        }
+        return c != 0 ? c : Long.compareUnsigned(a.v, b.v);
+    }
+
+    // quicksort of records [from, to) (in record indices)
+    static void sort(long[] records, int from, int to) {
+        while (to - from > INSERTION_SORT_THRESHOLD) {
+            int mid = (from + to) >>> 1;
+            // median of three to the middle
+            if (less(records, mid, from)) {
+                swap(records, mid, from);
+            }
+            if (less(records, to - 1, mid)) {
+                swap(records, to - 1, mid);
+                if (less(records, mid, from)) {
+                    swap(records, mid, from);
+                }
+            }
+            long p1 = records[mid * 3];
+            long p2 = records[mid * 3 + 1];
+            long p3 = records[mid * 3 + 2];
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compare(records, i, p1, p2, p3) < 0) {
+                    i++;
+                }
+                while (compare(records, j, p1, p2, p3) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(records, i++, j--);
+                }
+            }
+            // recurse into the smaller part
+            if (j - from < to - i) {
+                sort(records, from, j + 1);
+                from = i;
+            } else {
+                sort(records, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && less(records, j, j - 1); j--) {
+                swap(records, j, j - 1);
+            }
+        }
+    }
+
+    private static boolean less(long[] records, int a, int b) {
+        return compare(records, a, records[b * 3], records[b * 3 + 1], records[b * 3 + 2]) < 0;
+    }
+
+    private static int compare(long[] records, int a, long k1, long k2, long v) {
+        int c = Long.compareUnsigned(records[a * 3], k1);
+        if (c == 0) {
+            c = Long.compareUnsigned(records[a * 3 + 1], k2);
+        }
+        return c != 0 ? c : Long.compareUnsigned(records[a * 3 + 2], v);
+    }
+
+    private static void swap(long[] records, int a, int b) {
+        for (int k = 0; k < 3; k++) {
+            long tmp = records[a * 3 + k];
+            records[a * 3 + k] = records[b * 3 + k];
+            records[b * 3 + k] = tmp;
+        }
+    }
+
+
+    /**
+     * Sequential writer of a record file.
+     */
+    static class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        Writer(File file) {
+            try {
+                this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), IO_BUFFER_SIZE));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        void write(long k1, long k2, long v) {
+            try {
+                out.writeLong(k1);
+                out.writeLong(k2);
+                out.writeLong(v);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Sequential reader of a record file; fields hold the current record.
+     */
+    static class Reader implements Closeable {
+        private final DataInputStream in;
+        long k1;
+        long k2;
+        long v;
+
+        Reader(File file) {
+            try {
+                this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), IO_BUFFER_SIZE));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @return false at the end of file
+         */
+        boolean next() {
+            try {
+                k1 = in.readLong();
+                k2 = in.readLong();
+                v = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                return false;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import semicontinuity.exp.offheap.LongArray;
+
+/**
+ * Suffix array construction in external memory, for texts, that do not fit in RAM together with their suffix array.
+ * <p>
+ * Prefix doubling with discarding (R. Dementiev, J. Kärkkäinen, J. Mehnert, P. Sanders, Better external memory
+ * suffix array construction, 2005): suffixes are first named by their first 7 bytes, read from the data file
+ * sequentially; a name is the number of suffixes with a smaller prefix, so a unique name is the final rank.
+ * Then every round names suffixes by pairs (name[i], name[i + h]), doubling the prefix length h,
+ * until all names are unique. Every round is a couple of external sorts and sequential scans of scratch files,
+ * with the number of rounds logarithmic in the longest repeat.
+ * <p>
+ * Suffixes with unique names are discarded from the next rounds: suffix i is kept for one more round
+ * only if suffixes i - h and i - 2h are not unique (then suffix i - 2h may need name[i] in the next round).
+ * So a round sorts only suffixes in repeats longer than its prefix length, and their neighbours,
+ * and the total I/O depends on the lengths of repeats, rather than on n * log(longest repeat).
+ * <p>
+ * Only a configurable amount of memory is used (for sorted runs and I/O buffers);
+ * scratch files take up to 3 * 24 bytes per symbol in the first rounds (less, as suffixes are discarded),
+ * and 24 bytes per symbol for discarded suffixes.
+ * The suffix array is written sequentially.
+ */
+public class ExternalSuffixArray {
+    private static final int INITIAL_PREFIX = 7;
+    private static final long PREFIX_MASK = (1L << (8 * INITIAL_PREFIX)) - 1;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final ExternalSorter sorter;
+
+    /**
+     * @param ramBytes   memory budget
+     * @param scratchDir directory for scratch files
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ExternalSuffixArray(long ramBytes, File scratchDir) {
+        this.sorter = ExternalSorter.of(scratchDir, ramBytes);
+    }
+
+    ExternalSuffixArray(long ramBytes, File scratchDir, int fanIn) {
+        this.sorter = new ExternalSorter(scratchDir, ramBytes / 4 * 3, fanIn);
+    }
+
+    /**
+     * Computes suffix array of the bytes of the data file (compared unsigned), and writes it to sa.
+     */
+    public void build(File data, LongArray sa) {
+        long n = data.length();
+        File pairs = nameInitialPrefixes(data, n);
+        if (distinct(pairs)) {
+            // no repeats of the initial prefix length: suffixes are sorted
+            write(pairs, sa);
+            return;
+        }
+        // records (name, 0, i) of discarded suffixes
+        File done = sorter.scratchFile();
+        try (ExternalSorter.Writer doneWriter = new ExternalSorter.Writer(done)) {
+            File kept = null;
+            for (long h = INITIAL_PREFIX; pairs != null; h *= 2) {
+                File active = names(pairs, kept, h);
+                delete(pairs);
+                delete(kept);
+                kept = sorter.scratchFile();
+                try (ExternalSorter.Writer keptWriter = new ExternalSorter.Writer(kept)) {
+                    pairs = pairs(active, h, keptWriter, doneWriter);
+                }
+                delete(active);
+            }
+            try (ExternalSorter.Reader reader = new ExternalSorter.Reader(kept)) {
+                while (reader.next()) {
+                    doneWriter.write(reader.k1, reader.k2, reader.v);
+                }
+            }
+            delete(kept);
+        }
+
+        try (ExternalSorter.Reader reader = new ExternalSorter.Reader(done)) {
+            while (reader.next()) {
+                sorter.add(reader.k1, reader.k2, reader.v);
+            }
+        }
+        delete(done);
+        write(sort(), sa);
+    }
+
+    // values of sorted records to sa, deletes the file
+    private static void write(File sorted, LongArray sa) {
+        try (ExternalSorter.Reader reader = new ExternalSorter.Reader(sorted)) {
+            for (long i = 0; reader.next(); i++) {
+                sa.set(i, reader.v);
+            }
+        }
+        delete(sorted);
+    }
+
+    /**
+     * @return records (0, prefix, i), sorted; prefix holds the first 7 bytes of suffix i (zeroes past the end)
+     * and its length, if it is shorter, so that a suffix sorts before suffixes, that it is a prefix of
+     */
+    private File nameInitialPrefixes(File data, long n) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(data), READ_BUFFER_SIZE)) {
+            long window = 0;
+            for (int k = 0; k < INITIAL_PREFIX; k++) {
+                window = (window << 8) | (k < n ? read(in) : 0);
+            }
+            for (long i = 0; i < n; i++) {
+                sorter.add(0, (window << 8) | Math.min(n - i, INITIAL_PREFIX), i);
+                window = ((window << 8) | (i + INITIAL_PREFIX < n ? read(in) : 0)) & PREFIX_MASK;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return sort();
+    }
+
+    // true if no two consecutive records have the same key
+    private static boolean distinct(File sorted) {
+        try (ExternalSorter.Reader reader = new ExternalSorter.Reader(sorted)) {
+            boolean first = true;
+            long k1 = 0;
+            long k2 = 0;
+            while (reader.next()) {
+                if (!first && reader.k1 == k1 && reader.k2 == k2) {
+                    return false;
+                }
+                first = false;
+                k1 = reader.k1;
+                k2 = reader.k2;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Names suffixes from sorted records (name, next, i) of pairs, and adds kept suffixes (name, 0, i), if any.
+     * A new name is the old one, plus the number of suffixes with the same old name and smaller next name.
+     * @return records (i mod h, i div h, name * 2 + 1 if the name is unique, or name * 2), sorted,
+     * so that suffixes i and i + h are adjacent
+     */
+    private File names(File pairs, File kept, long h) {
+        try (ExternalSorter.Reader reader = new ExternalSorter.Reader(pairs)) {
+            long k1 = 0;
+            long k2 = 0;
+            long groupStart = 0;
+            long name = 0;
+            // the previous suffix is added, when it is known, whether it shares its pair with the next one
+            long previous = -1;
+            long previousName = 0;
+            boolean previousShared = false;
+            for (long index = 0; reader.next(); index++) {
+                boolean sameGroup = index > 0 && reader.k1 == k1;
+                boolean same = sameGroup && reader.k2 == k2;
+                if (!sameGroup) {
+                    groupStart = index;
+                }
+                if (!same) {
+                    name = reader.k1 + index - groupStart;
+                }
+                if (previous >= 0) {
+                    addName(previous, previousName, !previousShared && !same, h);
+                }
+                previous = reader.v;
+                previousName = name;
+                previousShared = same;
+                k1 = reader.k1;
+                k2 = reader.k2;
+            }
+            if (previous >= 0) {
+                addName(previous, previousName, !previousShared, h);
+            }
+        }
+        if (kept != null) {
+            try (ExternalSorter.Reader reader = new ExternalSorter.Reader(kept)) {
+                while (reader.next()) {
+                    addName(reader.v, reader.k1, true, h);
+                }
+            }
+        }
+        return sort();
+    }
+
+    private void addName(long i, long name, boolean unique, long h) {
+        sorter.add(i % h, i / h, name << 1 | (unique ? 1 : 0));
+    }
+
+    /**
+     * Writes suffixes with unique names (name, 0, i) to kept or done, and pairs the others.
+     * @return records (name[i], name[i + h] + 1 or 0 past the end, i) of suffixes with non-unique names, sorted,
+     * or null, if there are none
+     */
+    private File pairs(File active, long h, ExternalSorter.Writer kept, ExternalSorter.Writer done) {
+        long count = 0;
+        try (ExternalSorter.Reader reader = new ExternalSorter.Reader(active)) {
+            // positions of the previous two suffixes, if their names are not unique
+            long previous = -1;
+            long beforePrevious = -1;
+            boolean more = reader.next();
+            while (more) {
+                long i = reader.k1 + reader.k2 * h;
+                long name = reader.v >>> 1;
+                boolean unique = (reader.v & 1) != 0;
+                more = reader.next();
+                if (unique) {
+                    if (previous == i - h && beforePrevious == i - 2 * h) {
+                        kept.write(name, 0, i);
+                    } else {
+                        done.write(name, 0, i);
+                    }
+                    previous = -1;
+                    beforePrevious = -1;
+                } else {
+                    long next = more && reader.k1 + reader.k2 * h == i + h ? (reader.v >>> 1) + 1 : 0;
+                    sorter.add(name, next, i);
+                    count++;
+                    beforePrevious = previous;
+                    previous = i;
+                }
+            }
+        }
+        return count == 0 ? null : sort();
+    }
+
+    private File sort() {
+        File output = sorter.scratchFile();
+        sorter.sortTo(output);
+        return output;
+    }
+
+    private static void delete(File file) {
+        if (file != null) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static int read(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new IOException("Unexpected end of data");
+        }
+        return b;
+    }
+}
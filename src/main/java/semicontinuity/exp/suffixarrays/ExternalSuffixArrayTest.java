@@ -0,0 +1,98 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class ExternalSuffixArrayTest {
+
+    @Test
+    public void sameAsInMemory() throws IOException {
+        File dir = Files.createTempDirectory("esa").toFile();
+        check(dir, random(5000, 256, 1));
+        check(dir, random(5000, 2, 1));
+        // long repeats need many rounds
+        check(dir, random(3000, 3, 200));
+        check(dir, new byte[]{7});
+        check(dir, new byte[]{0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        // suffixes, discarded in different rounds
+        check(dir, periodic(2000, 3));
+        check(dir, periodic(1500, 100));
+        Assert.assertEquals(0, dir.list().length);
+        Assert.assertTrue(dir.delete());
+    }
+
+    @Test
+    public void sortRecords() {
+        Random random = new Random(1);
+        int n = 1000;
+        long[] records = new long[n * 3];
+        for (int i = 0; i < n; i++) {
+            records[i * 3] = random.nextInt(10) - 5;
+            records[i * 3 + 1] = random.nextInt(3);
+            records[i * 3 + 2] = i;
+        }
+        ExternalSorter.sort(records, 0, n);
+        for (int i = 1; i < n; i++) {
+            int c = Long.compareUnsigned(records[i * 3 - 3], records[i * 3]);
+            if (c == 0) {
+                c = Long.compareUnsigned(records[i * 3 - 2], records[i * 3 + 1]);
+            }
+            Assert.assertTrue(c < 0 || c == 0 && records[i * 3 - 1] < records[i * 3 + 2]);
+        }
+    }
+
+    private static void check(File dir, byte[] bytes) throws IOException {
+        File data = new File(dir, "data");
+        try (FileOutputStream out = new FileOutputStream(data)) {
+            out.write(bytes);
+        }
+        int n = bytes.length;
+        LongArray actual = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        // ~100 records per run, 3 runs merged at once
+        new ExternalSuffixArray(3200, dir, 3).build(data, actual);
+        Assert.assertTrue(data.delete());
+
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(n);
+        for (int i = 0; i < n; i++) {
+            text.set(i, bytes[i] & 0xFF);
+        }
+        LongArray expected = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, expected, n, 256);
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(expected.get(i), actual.get(i));
+        }
+        text.close();
+        expected.close();
+        actual.close();
+    }
+
+    private static byte[] periodic(int n, int period) {
+        byte[] bytes = new byte[n];
+        for (int i = 0; i < n; i++) {
+            bytes[i] = (byte) (i % period * 37);
+        }
+        return bytes;
+    }
+
+    // text with runs of equal symbols, if runLength > 1
+    private static byte[] random(int n, int alphabetSize, int repeatLength) {
+        Random random = new Random(n + alphabetSize);
+        byte[] bytes = new byte[n];
+        for (int i = 0; i < n; i++) {
+            bytes[i] = i >= repeatLength && random.nextInt(50) != 0
+                    ? bytes[i - repeatLength]
+                    : (byte) random.nextInt(alphabetSize);
+        }
+        return bytes;
+    }
+}
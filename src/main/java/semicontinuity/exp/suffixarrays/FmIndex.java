@@ -0,0 +1,341 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.Closeable;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapBitVector;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+import semicontinuity.exp.offheap.RrrBitVector;
+
+/**
+ * FM-index of byte text: Burrows-Wheeler transform (from {@link Sais#bwtransform(LongArray, LongArray, LongArray, long)})
+ * with rank support, for counting occurrences of a pattern of length m with O(m) rank queries (backward search),
+ * and optionally sampled suffix array, to locate them.
+ * <p>
+ * BWT is kept in a wavelet matrix: symbols, that occur in text, are numbered 0..sigma-1 (in order),
+ * and level l is the bit vector of bit l (from the highest) of these numbers, with symbols stably sorted
+ * by the previous bits; so rank of a symbol is ceil(log2(sigma)) rank queries.
+ * Levels are compressed with {@link RrrBitVector}: BWT of repetitive text has long runs of equal symbols,
+ * so levels have long runs of equal bits, and take a fraction of ceil(log2(sigma)) bits per symbol,
+ * at the cost of slower rank queries.
+ * Rows of BWT are 0 for the empty suffix, and i + 1 for sa[i].
+ * <p>
+ * Suffix array is sampled at text positions, that are multiples of sample rate s: locate takes at most s - 1
+ * LF-mapping steps per occurrence.
+ * Space: compressed BWT (at most about ceil(log2(sigma)) * n bits, much less for compressible text),
+ * compressed bit vector of sampled rows, and 5n / s bytes for samples,
+ * instead of 6n bytes for text and 5-byte suffix array.
+ * <p>
+ * Storage consists of meta data and samples (long arrays with values below 2^40), and compressed bit vectors
+ * (long arrays with 64-bit values), that can be memory-mapped files.
+ * Queries do not modify state, so they can run concurrently.
+ */
+public class FmIndex implements Closeable {
+    private static final int ALPHABET_SIZE = 256;
+    private static final int MAX_LEVELS = 8;
+    // meta data layout
+    private static final int LENGTH = 0;
+    private static final int PRIMARY = 1;
+    private static final int LEVELS = 2;
+    private static final int SAMPLE_RATE = 3;
+    private static final int CODES = 4;
+    private static final int COUNTS = CODES + ALPHABET_SIZE;
+    private static final int ZEROES = COUNTS + ALPHABET_SIZE + 1;
+    static final int META_LENGTH = ZEROES + MAX_LEVELS;
+
+    /**
+     * Allocates parts of the index by name: long arrays "meta" and "samples",
+     * and words of compressed bit vectors "bwt" and "sampled".
+     */
+    public interface Storage {
+        LongArray longs(String name, long length);
+
+        LongArray words(String name, long length);
+    }
+
+    public static final Storage IN_MEMORY = new Storage() {
+        @Override
+        public LongArray longs(String name, long length) {
+            return new OffheapByteArrayAsLongArrayLsb(length);
+        }
+
+        @Override
+        public LongArray words(String name, long length) {
+            return new OffheapByteArrayAsLongArrayLsb(length);
+        }
+    };
+
+    private final LongArray meta;
+    private final RrrBitVector bwt;
+    private final long n;
+    private final long primary;
+    private final int levels;
+    private final int sampleRate;
+    private final int[] codes = new int[ALPHABET_SIZE];
+    private final long[] counts;
+    private final long[] zeroes;
+    private final long[] levelRanks;
+    private RrrBitVector sampled;
+    private LongArray samples;
+
+    /**
+     * Opens index, previously built with {@link #build(LongArray, long, int, Storage)}.
+     * @param sampled null, if suffix array was not sampled
+     * @param samples null, if suffix array was not sampled
+     */
+    @SuppressWarnings("WeakerAccess")
+    public FmIndex(LongArray meta, RrrBitVector bwt, RrrBitVector sampled, LongArray samples) {
+        this.meta = meta;
+        this.bwt = bwt;
+        this.n = meta.get(LENGTH);
+        this.primary = meta.get(PRIMARY);
+        this.levels = (int) meta.get(LEVELS);
+        this.sampleRate = (int) meta.get(SAMPLE_RATE);
+        int sigma = 0;
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+            codes[c] = (int) meta.get(CODES + c);
+            if (codes[c] >= 0) {
+                sigma++;
+            }
+        }
+        this.counts = new long[sigma + 1];
+        for (int code = 0; code <= sigma; code++) {
+            counts[code] = meta.get(COUNTS + code);
+        }
+        this.zeroes = new long[levels];
+        this.levelRanks = new long[levels];
+        for (int l = 0; l < levels; l++) {
+            zeroes[l] = meta.get(ZEROES + l);
+            levelRanks[l] = this.bwt.rank1(l * n);
+        }
+        this.sampled = sampled;
+        this.samples = samples;
+    }
+
+    /**
+     * Builds index of text[0..n-1] (n &gt; 0).
+     * Extra memory: 6n bytes for BWT construction, then 2n bytes and ceil(log2(sigma)) * n bits
+     * for the wavelet matrix, before it is compressed.
+     * @param text       text symbols, in the range [0-255]
+     * @param sampleRate every sampleRate-th text position is sampled for locate, or 0 to support only counting
+     */
+    public static FmIndex build(LongArray text, long n, int sampleRate, Storage storage) {
+        if (n <= 0) {
+            throw new IllegalArgumentException(String.valueOf(n));
+        }
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException(String.valueOf(sampleRate));
+        }
+        LongArray sequence = new ByteArrayAsLongArrayAdapter(n);
+        long primary;
+        try (LongArray work = new OffheapByteArrayAsFiveByteLongArrayLsb(n)) {
+            primary = Sais.bwtransform(text, sequence, work, n);
+        }
+
+        long[] frequencies = new long[ALPHABET_SIZE];
+        for (long i = 0; i < n; i++) {
+            frequencies[(int) sequence.get(i)]++;
+        }
+        LongArray meta = storage.longs("meta", META_LENGTH);
+        int[] codes = new int[ALPHABET_SIZE];
+        int sigma = 0;
+        // the empty suffix is the first
+        long count = 1;
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+            codes[c] = frequencies[c] > 0 ? sigma++ : -1;
+            meta.set(CODES + c, codes[c]);
+            if (codes[c] >= 0) {
+                meta.set(COUNTS + codes[c], count);
+                count += frequencies[c];
+            }
+        }
+        meta.set(COUNTS + sigma, count);
+        int levels = Math.max(1, 64 - Long.numberOfLeadingZeros(sigma - 1));
+        meta.set(LENGTH, n);
+        meta.set(PRIMARY, primary);
+        meta.set(LEVELS, levels);
+        meta.set(SAMPLE_RATE, sampleRate);
+
+        for (long i = 0; i < n; i++) {
+            sequence.set(i, codes[(int) sequence.get(i)]);
+        }
+        OffheapBitVector bits = new OffheapBitVector(levels * n);
+        try (LongArray next = new ByteArrayAsLongArrayAdapter(n)) {
+            LongArray current = sequence;
+            LongArray other = next;
+            for (int l = 0; l < levels; l++) {
+                int shift = levels - 1 - l;
+                long zeroCount = 0;
+                for (long i = 0; i < n; i++) {
+                    if ((current.get(i) >> shift & 1) != 0) {
+                        bits.set(l * n + i);
+                    } else {
+                        zeroCount++;
+                    }
+                }
+                meta.set(ZEROES + l, zeroCount);
+                if (l == levels - 1) {
+                    break;
+                }
+                // stable partition by this bit, for the next level
+                long z = 0;
+                long o = zeroCount;
+                for (long i = 0; i < n; i++) {
+                    long code = current.get(i);
+                    other.set((code >> shift & 1) != 0 ? o++ : z++, code);
+                }
+                LongArray swap = current;
+                current = other;
+                other = swap;
+            }
+        }
+        sequence.close();
+
+        RrrBitVector bwt = RrrBitVector.build(bits, storage.words("bwt", RrrBitVector.storageLength(bits)));
+        bits.close();
+        FmIndex index = new FmIndex(meta, bwt, null, null);
+        if (sampleRate > 0) {
+            index.computeSamples(storage);
+        }
+        return index;
+    }
+
+    public long length() {
+        return n;
+    }
+
+    /**
+     * @return true, if suffix array was sampled, so that {@link #locate(byte[], int)} is supported
+     */
+    public boolean isSampled() {
+        return sampled != null;
+    }
+
+    /**
+     * @return range [from, to) of suffix array with suffixes, that start with the pattern (from == to if none)
+     */
+    public long[] range(byte[] pattern) {
+        long from = 0;
+        long to = n + 1;
+        for (int k = pattern.length - 1; k >= 0 && from < to; k--) {
+            int code = codes[pattern[k] & 0xFF];
+            if (code < 0) {
+                return new long[] {0, 0};
+            }
+            from = counts[code] + rank(code, from);
+            to = counts[code] + rank(code, to);
+        }
+        if (pattern.length == 0) {
+            return new long[] {0, n};
+        }
+        return from < to ? new long[] {from - 1, to - 1} : new long[] {0, 0};
+    }
+
+    /**
+     * @return number of occurrences of the pattern in text
+     */
+    public long count(byte[] pattern) {
+        long[] range = range(pattern);
+        return range[1] - range[0];
+    }
+
+    /**
+     * @return text positions of at most limit occurrences of the pattern, in the order of suffix array
+     */
+    public long[] locate(byte[] pattern, int limit) {
+        if (sampled == null) {
+            throw new UnsupportedOperationException("Suffix array was not sampled");
+        }
+        long[] range = range(pattern);
+        long[] positions = new long[(int) Math.min(limit, range[1] - range[0])];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = locate(range[0] + i + 1);
+        }
+        return positions;
+    }
+
+    @Override
+    public void close() {
+        meta.close();
+        bwt.close();
+        if (sampled != null) {
+            sampled.close();
+            samples.close();
+        }
+    }
+
+
+    // text position of the suffix in the given row
+    private long locate(long row) {
+        long steps = 0;
+        while (!sampled.get(row)) {
+            row = lf(row);
+            steps++;
+        }
+        return samples.get(sampled.rank1(row)) + steps;
+    }
+
+    // samples are found by walking all text positions backwards with LF mapping, from the empty suffix
+    private void computeSamples(Storage storage) {
+        long sampleCount = (n - 1) / sampleRate + 1;
+        OffheapBitVector sampledBits = new OffheapBitVector(n + 1);
+        try (LongArray rows = new OffheapByteArrayAsFiveByteLongArrayLsb(sampleCount)) {
+            long row = 0;
+            for (long p = n - 1; p >= 0; p--) {
+                row = lf(row);
+                if (p % sampleRate == 0) {
+                    sampledBits.set(row);
+                    rows.set(p / sampleRate, row);
+                }
+            }
+            sampled = RrrBitVector.build(sampledBits, storage.words("sampled", RrrBitVector.storageLength(sampledBits)));
+            sampledBits.close();
+            samples = storage.longs("samples", sampleCount);
+            for (long j = 0; j < sampleCount; j++) {
+                samples.set(sampled.rank1(rows.get(j)), j * sampleRate);
+            }
+        }
+    }
+
+    // row of the suffix, that is one symbol longer (row must not be the one of the whole text)
+    private long lf(long row) {
+        long i = row < primary ? row : row - 1;
+        long start = 0;
+        int code = 0;
+        for (int l = 0; l < levels; l++) {
+            long base = l * n;
+            if (bwt.get(base + i)) {
+                code = code << 1 | 1;
+                i = zeroes[l] + rank1(l, i);
+                start = zeroes[l] + rank1(l, start);
+            } else {
+                code = code << 1;
+                i -= rank1(l, i);
+                start -= rank1(l, start);
+            }
+        }
+        return counts[code] + i - start;
+    }
+
+    // occurrences of the symbol with the given code in BWT rows [0, row)
+    private long rank(int code, long row) {
+        long i = row <= primary ? row : row - 1;
+        long start = 0;
+        for (int l = 0; l < levels; l++) {
+            if ((code >> (levels - 1 - l) & 1) != 0) {
+                i = zeroes[l] + rank1(l, i);
+                start = zeroes[l] + rank1(l, start);
+            } else {
+                i -= rank1(l, i);
+                start -= rank1(l, start);
+            }
+        }
+        return i - start;
+    }
+
+    private long rank1(int level, long i) {
+        return bwt.rank1(level * n + i) - levelRanks[level];
+    }
+}
@@ -0,0 +1,91 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class FmIndexTest {
+
+    @Test
+    public void sameAsSuffixArraySearch() {
+        for (int n = 1; n < 300; n += 13) {
+            check(SuffixArraysTest.random(n, 3, 4), 1 + n % 5);
+        }
+        check(SuffixArraysTest.random(5000, 1, 1), 7);
+        check(SuffixArraysTest.random(5000, 2, 1), 16);
+        check(SuffixArraysTest.random(5000, 256, 1), 32);
+        check(SuffixArraysTest.random(5000, 5, 300), 0);
+    }
+
+    @Test
+    public void compressesRepetitiveText() {
+        // random block of 1000 symbols, repeated with rare changes
+        int n = 200_000;
+        Random random = new Random(1);
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(n);
+        for (int i = 0; i < n; i++) {
+            text.set(i, i >= 1000 && random.nextInt(1000) != 0 ? text.get(i - 1000) : 'a' + random.nextInt(26));
+        }
+        long[] words = new long[1];
+        FmIndex index = FmIndex.build(text, n, 0, new FmIndex.Storage() {
+            @Override
+            public LongArray longs(String name, long length) {
+                return FmIndex.IN_MEMORY.longs(name, length);
+            }
+
+            @Override
+            public LongArray words(String name, long length) {
+                words[0] += length;
+                return FmIndex.IN_MEMORY.words(name, length);
+            }
+        });
+        // a fraction of the text size (5 bits per symbol, if not compressed)
+        Assert.assertTrue(String.valueOf(words[0]), words[0] * Long.BYTES < n / 4);
+        byte[] pattern = new byte[20];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = (byte) text.get(100_000 + i);
+        }
+        Assert.assertTrue(index.count(pattern) > 0);
+        index.close();
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text, int sampleRate) {
+        int n = (int) text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        SuffixArraySearch search = new SuffixArraySearch(text, sa);
+        FmIndex index = FmIndex.build(text, n, sampleRate, FmIndex.IN_MEMORY);
+
+        Random random = new Random(n);
+        for (int q = 0; q < 100; q++) {
+            int start = random.nextInt(n);
+            byte[] pattern = new byte[random.nextInt(Math.min(n - start, 30) + 1)];
+            for (int i = 0; i < pattern.length; i++) {
+                pattern[i] = (byte) (q % 2 == 0 ? text.get(start + i) : random.nextInt(4));
+            }
+            long count = search.count(pattern);
+            Assert.assertEquals(count, index.count(pattern));
+            if (count > 0) {
+                Assert.assertArrayEquals(search.range(pattern), index.range(pattern));
+                if (sampleRate > 0) {
+                    Assert.assertArrayEquals(search.locate(pattern, 5), index.locate(pattern, 5));
+                }
+            }
+        }
+        if (sampleRate > 0) {
+            long[] all = index.locate(new byte[0], n);
+            long[] expected = new long[n];
+            Arrays.setAll(expected, sa::get);
+            Assert.assertArrayEquals(expected, all);
+        }
+        index.close();
+        sa.close();
+        text.close();
+    }
+}
@@ -0,0 +1,312 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.Closeable;
+
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapBitVector;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+/**
+ * Stage 3 of {@link Sais} (induced sorting of all suffixes from sorted LMS suffixes), that induces LCP array too:
+ * <tt>J. Fischer. Inducing the LCP-Array. In Proc. 12th Workshop on Algorithms and Data Structures (WADS ’11),
+ * pages 374–385. Springer-Verlag LNCS n. 6844, 2011.</tt>
+ * <p>
+ * LCP values of adjacent LMS suffixes are computed first, with Kasai's recurrence over the reduced string
+ * (whole LMS substrings are skipped, then the last one is compared by characters).
+ * Then, when a suffix cA is induced next to cB in bucket c, LCP(cA, cB) = 1 + LCP(A, B), and LCP(A, B) is the minimum
+ * of LCP values, scanned between A and B, found in a stack of increasing minima with binary search.
+ * At the border of L and S suffixes in a bucket (and at the first LMS suffix of a bucket), LCP is computed
+ * by comparing suffixes directly: they only share a run of the bucket's symbol.
+ * <p>
+ * Empty entries of suffix array are -1 while inducing, so suffix array must hold negative values.
+ * Extra memory: n bits for types and O(k) for buckets, plus the stack (off-heap, up to 10n bytes).
+ */
+final class LcpInducer {
+    private static final long EMPTY = -1;
+
+    private final LongArray t;
+    private final LongArray sa;
+    private final LongArray lcp;
+    private final long n;
+    private final int k;
+    private final OffheapBitVector types;
+    private final long[] bucketStart;
+    private final long[] bucketEnd;
+    private final long[] b;
+    private final long[] source;
+    private final MinStack stack = new MinStack();
+
+    LcpInducer(LongArray t, LongArray sa, LongArray lcp, long n, long k) {
+        if (k > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(String.valueOf(k));
+        }
+        this.t = t;
+        this.sa = sa;
+        this.lcp = lcp;
+        this.n = n;
+        this.k = (int) k;
+        this.types = new OffheapBitVector(n);
+        this.bucketStart = new long[this.k];
+        this.bucketEnd = new long[this.k];
+        this.b = new long[this.k];
+        this.source = new long[this.k];
+    }
+
+    /**
+     * @param m number of LMS suffixes, sorted in sa[0..m-1]
+     */
+    void induce(long m) {
+        try {
+            classify();
+            buckets();
+            lmsLcp(m);
+            long[] lmsStart = placeLms(m);
+            induceL(lmsStart);
+            induceS();
+            lcp.set(0, -1);
+        } finally {
+            types.close();
+            stack.close();
+        }
+    }
+
+    // S: 1, L: 0; the last suffix is L
+    private void classify() {
+        boolean s = false;
+        for (long i = n - 2; i >= 0; i--) {
+            long c0 = t.get(i);
+            long c1 = t.get(i + 1);
+            s = c0 < c1 || (c0 == c1 && s);
+            types.set(i, s);
+        }
+    }
+
+    private boolean isLms(long i) {
+        return i > 0 && types.get(i) && !types.get(i - 1);
+    }
+
+    private void buckets() {
+        for (long i = 0; i < n; i++) {
+            bucketEnd[(int) t.get(i)]++;
+        }
+        long sum = 0;
+        for (int c = 0; c < k; c++) {
+            bucketStart[c] = sum;
+            sum += bucketEnd[c];
+            bucketEnd[c] = sum;
+        }
+    }
+
+    /**
+     * Leaves LCP of LMS suffixes in sorted order in lcp[0..m-1] (0 for the first).
+     * Uses sa[m..2m-1] for LMS positions in text order, and lcp[m + (p >> 1)] for index of LMS position p
+     * (LMS positions are at least 2 apart, and m &lt;= n / 2).
+     */
+    private void lmsLcp(long m) {
+        long index = 0;
+        for (long p = 1; p < n; p++) {
+            if (isLms(p)) {
+                sa.set(m + index, p);
+                lcp.set(m + (p >> 1), index++);
+            }
+        }
+        // lcp[i] = index of predecessor in sorted order
+        for (long r = 0; r < m; r++) {
+            lcp.set(lcp.get(m + (sa.get(r) >> 1)), r == 0 ? -1 : lcp.get(m + (sa.get(r - 1) >> 1)));
+        }
+        // Kasai's recurrence on the reduced string: l substrings are equal
+        long l = 0;
+        for (long i = 0; i < m; i++) {
+            long j = lcp.get(i);
+            if (j < 0) {
+                lcp.set(i, 0);
+                l = 0;
+                continue;
+            }
+            long p = lmsPosition(i, m);
+            long q = lmsPosition(j, m);
+            long h = lmsPosition(i + l, m) - p;
+            while (p + h < n && q + h < n && t.get(p + h) == t.get(q + h)) {
+                h++;
+            }
+            while (i + l < m && j + l < m
+                    && lmsPosition(i + l + 1, m) - p == lmsPosition(j + l + 1, m) - q
+                    && lmsPosition(i + l + 1, m) - p <= h) {
+                l++;
+            }
+            lcp.set(i, h);
+            if (l > 0) {
+                l--;
+            }
+        }
+        // to sorted order
+        for (long r = 0; r < m; r++) {
+            sa.set(m + r, lcp.get(lcp.get(m + (sa.get(r) >> 1))));
+        }
+        for (long r = 0; r < m; r++) {
+            lcp.set(r, sa.get(m + r));
+        }
+    }
+
+    private long lmsPosition(long index, long m) {
+        return index == m ? n : sa.get(m + index);
+    }
+
+    // puts sorted LMS suffixes to the ends of their buckets, with their LCP values; returns the first LMS in buckets
+    private long[] placeLms(long m) {
+        for (long i = m; i < n; i++) {
+            sa.set(i, EMPTY);
+        }
+        System.arraycopy(bucketEnd, 0, b, 0, k);
+        for (long r = m - 1; r >= 0; r--) {
+            long p = sa.get(r);
+            long value = lcp.get(r);
+            sa.set(r, EMPTY);
+            long position = --b[(int) t.get(p)];
+            sa.set(position, p);
+            lcp.set(position, value);
+        }
+        return b.clone();
+    }
+
+    private void induceL(long[] lmsStart) {
+        System.arraycopy(bucketStart, 0, b, 0, k);
+        stack.clear();
+        // the last suffix is induced from the virtual empty suffix before sa[0]
+        placeL(n - 1, -1);
+        for (long i = 0; i < n; i++) {
+            long j = sa.get(i);
+            if (j == EMPTY) {
+                continue;
+            }
+            int c = (int) t.get(j);
+            if (types.get(j) && i == lmsStart[c]) {
+                // all L suffixes of the bucket are already there
+                lcp.set(i, b[c] == bucketStart[c] ? 0 : lcpDirect(sa.get(b[c] - 1), j));
+            }
+            stack.push(i, lcp.get(i));
+            if (j > 0 && !types.get(j - 1)) {
+                placeL(j - 1, i);
+            }
+        }
+    }
+
+    private void placeL(long suffix, long from) {
+        int c = (int) t.get(suffix);
+        long position = b[c]++;
+        sa.set(position, suffix);
+        lcp.set(position, position == bucketStart[c] ? 0 : 1 + stack.minAfter(source[c]));
+        source[c] = from;
+    }
+
+    private void induceS() {
+        System.arraycopy(bucketEnd, 0, b, 0, k);
+        stack.clear();
+        for (long i = n - 1; i >= 0; i--) {
+            long j = sa.get(i);
+            if (j > 0 && types.get(j - 1)) {
+                placeS(j - 1, i);
+            }
+            int c = (int) t.get(j);
+            if (types.get(j) && b[c] == i) {
+                // the lowest S suffix in the bucket: next to the last L suffix
+                lcp.set(i, i == bucketStart[c] ? 0 : lcpDirect(sa.get(i - 1), j));
+            }
+            stack.push(i, lcp.get(i));
+        }
+    }
+
+    private void placeS(long suffix, long from) {
+        int c = (int) t.get(suffix);
+        long position = --b[c];
+        sa.set(position, suffix);
+        if (position + 1 < bucketEnd[c]) {
+            lcp.set(position + 1, 1 + stack.minUpTo(source[c]));
+        }
+        source[c] = from;
+    }
+
+    private long lcpDirect(long p, long q) {
+        long h = 0;
+        while (p + h < n && q + h < n && t.get(p + h) == t.get(q + h)) {
+            h++;
+        }
+        return h;
+    }
+
+
+    /**
+     * Positions, pushed in monotone order, with increasing LCP values:
+     * values, that are not smaller than a pushed one, are popped, as they are not minima of ranges ending later.
+     * The stack can grow to n entries (e.g. on runs of one symbol, where induced LCP values increase),
+     * so entries (position, value) are kept off-heap, 10 bytes each, and the storage doubles, when full.
+     */
+    private static class MinStack implements Closeable {
+        private LongArray entries = new OffheapByteArrayAsFiveByteLongArrayLsb(2 * 64);
+        private long size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void push(long position, long value) {
+            while (size > 0 && value(size - 1) >= value) {
+                size--;
+            }
+            if (2 * size == entries.length()) {
+                LongArray grown = new OffheapByteArrayAsFiveByteLongArrayLsb(2 * entries.length());
+                for (long i = 0; i < 2 * size; i++) {
+                    grown.set(i, entries.get(i));
+                }
+                entries.close();
+                entries = grown;
+            }
+            entries.set(2 * size, position);
+            entries.set(2 * size + 1, value);
+            size++;
+        }
+
+        // minimum of values at positions greater than the given one, positions increasing
+        long minAfter(long position) {
+            long lo = 0;
+            long hi = size - 1;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (position(mid) > position) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return value(lo);
+        }
+
+        // minimum of values at positions up to the given one, positions decreasing
+        long minUpTo(long position) {
+            long lo = 0;
+            long hi = size - 1;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                if (position(mid) <= position) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return value(lo);
+        }
+
+        @Override
+        public void close() {
+            entries.close();
+        }
+
+        private long position(long i) {
+            return entries.get(2 * i);
+        }
+
+        private long value(long i) {
+            return entries.get(2 * i + 1);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package semicontinuity.exp.suffixarrays;
 
+/**
+ * Interval of suffixes sa[from..to], that share a common prefix of length value.
+ * For a singleton interval (a leaf, from == to), value is the length of the suffix.
+ */
 public class LcpInterval {
     public long value;
     public long from;
@@ -10,4 +14,13 @@ public class LcpInterval {
         this.from = from;
         this.to = to;
     }
+
+    public boolean isLeaf() {
+        return from == to;
+    }
+
+    @Override
+    public String toString() {
+        return value + "-[" + from + ".." + to + "]";
+    }
 }
@@ -0,0 +1,243 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongConsumer;
+
+import semicontinuity.exp.offheap.LongArray;
+
+/**
+ * Range minimum queries over LCP array in constant time, and longest common extension (LCE) of two suffixes:
+ * LCE(i, j) = min(lcp[rsa[i] + 1..rsa[j]]), for rsa[i] &lt; rsa[j].
+ * <p>
+ * LCP array is divided into blocks of 64 values, and blocks into super-blocks of 64 blocks.
+ * For every block, a long holds its minimum (49 bits), and a sparse table inside its super-block (15 bits):
+ * offsets of the minimal block in the ranges of 2, 4, ..., 32 blocks, starting at this one.
+ * For super-blocks, there is a sparse table of minima over ranges of 2^k super-blocks.
+ * A query is answered with at most two scans of partial blocks at its ends (64 bytes each, if LCP array is compact),
+ * two lookups in block sparse tables, and two in the super-block sparse table.
+ * Extra space: about 1 bit per LCP value (plus 64 * log(n / 4096) bits per 4096 values for the super-block table).
+ * <p>
+ * Storage is a LongArray with a small header, so it can be persisted in a file next to sa/lcp, and opened later.
+ * It can be built in parallel; queries do not modify state, so they can run concurrently.
+ */
+public class LcpRmq implements Closeable {
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK = 1 << BLOCK_SHIFT;
+    private static final int LEVELS_IN_SUPER_BLOCK = BLOCK_SHIFT - 1;
+    private static final int VALUE_BITS = 49;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+    private static final int HEADER = 4;
+
+    private final LongArray lcp;
+    private final LongArray storage;
+    private final long n;
+    private final long blockCount;
+    private final long superBlockCount;
+    private final int levels;
+
+    /**
+     * Opens structure, previously built with {@link #build(LongArray, LongArray)}.
+     */
+    @SuppressWarnings("WeakerAccess")
+    public LcpRmq(LongArray lcp, LongArray storage) {
+        this.lcp = lcp;
+        this.storage = storage;
+        this.n = storage.get(0);
+        this.blockCount = storage.get(1);
+        this.superBlockCount = storage.get(2);
+        this.levels = (int) storage.get(3);
+    }
+
+    /**
+     * @return required length of storage
+     */
+    public static long storageLength(long n) {
+        long blocks = (n + BLOCK - 1) >> BLOCK_SHIFT;
+        long superBlocks = (blocks + BLOCK - 1) >> BLOCK_SHIFT;
+        return HEADER + blocks + superBlocks * levels(superBlocks);
+    }
+
+    private static int levels(long superBlocks) {
+        return 64 - Long.numberOfLeadingZeros(superBlocks);
+    }
+
+    /**
+     * Builds structure over lcp (values in [-1, 2^48)) into storage of length {@link #storageLength(long)}.
+     */
+    public static LcpRmq build(LongArray lcp, LongArray storage) {
+        return build(lcp, storage, 1);
+    }
+
+    /**
+     * Builds structure over lcp (values in [-1, 2^48)) into storage of length {@link #storageLength(long)}
+     * on the given number of threads; if there are several, lcp must allow concurrent reads,
+     * and storage must allow concurrent writes to distinct positions.
+     */
+    public static LcpRmq build(LongArray lcp, LongArray storage, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(String.valueOf(threads));
+        }
+        long n = lcp.length();
+        long blocks = (n + BLOCK - 1) >> BLOCK_SHIFT;
+        long superBlocks = (blocks + BLOCK - 1) >> BLOCK_SHIFT;
+        storage.set(0, n);
+        storage.set(1, blocks);
+        storage.set(2, superBlocks);
+        storage.set(3, levels(superBlocks));
+        LcpRmq result = new LcpRmq(lcp, storage);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            result.computeBlocks(pool, threads);
+            result.computeSuperBlocks(pool, threads);
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * @return minimum of lcp[from..to] (from &lt;= to)
+     */
+    public long min(long from, long to) {
+        long first = from >> BLOCK_SHIFT;
+        long last = to >> BLOCK_SHIFT;
+        if (first == last) {
+            return scan(from, to);
+        }
+        long min = Math.min(scan(from, (first << BLOCK_SHIFT) + BLOCK - 1), scan(last << BLOCK_SHIFT, to));
+        return first + 1 < last ? Math.min(min, blockMin(first + 1, last - 1)) : min;
+    }
+
+    /**
+     * @return length of the longest common prefix of suffixes at text positions i and j
+     */
+    public long lce(LongArray rsa, long i, long j) {
+        if (i == j) {
+            return n - i;
+        }
+        long ri = rsa.get(i);
+        long rj = rsa.get(j);
+        return min(Math.min(ri, rj) + 1, Math.max(ri, rj));
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+
+
+    // minimum of blocks [first..last]
+    private long blockMin(long first, long last) {
+        long firstSuper = first >> BLOCK_SHIFT;
+        long lastSuper = last >> BLOCK_SHIFT;
+        if (firstSuper == lastSuper) {
+            return inSuperBlock(first, last);
+        }
+        long min = Math.min(
+                inSuperBlock(first, (firstSuper << BLOCK_SHIFT) + BLOCK - 1),
+                inSuperBlock(lastSuper << BLOCK_SHIFT, last));
+        return firstSuper + 1 < lastSuper ? Math.min(min, superBlockMin(firstSuper + 1, lastSuper - 1)) : min;
+    }
+
+    // minimum of blocks [first..last] in the same super-block
+    private long inSuperBlock(long first, long last) {
+        long count = last - first + 1;
+        if (count == BLOCK) {
+            return superBlockMin(first >> BLOCK_SHIFT, first >> BLOCK_SHIFT);
+        }
+        int level = 63 - Long.numberOfLeadingZeros(count);
+        long second = last - (1L << level) + 1;
+        return Math.min(value(first + offset(storage.get(HEADER + first), level)),
+                value(second + offset(storage.get(HEADER + second), level)));
+    }
+
+    // minimum of super-blocks [first..last]
+    private long superBlockMin(long first, long last) {
+        int level = 63 - Long.numberOfLeadingZeros(last - first + 1);
+        return Math.min(superBlockTable(level, first), superBlockTable(level, last - (1L << level) + 1));
+    }
+
+    private long superBlockTable(int level, long superBlock) {
+        return storage.get(HEADER + blockCount + level * superBlockCount + superBlock);
+    }
+
+    private long scan(long from, long to) {
+        long min = Long.MAX_VALUE;
+        for (long i = from; i <= to; i++) {
+            min = Math.min(min, lcp.get(i));
+        }
+        return min;
+    }
+
+    // minimum of the block
+    private long value(long block) {
+        return (storage.get(HEADER + block) & VALUE_MASK) - 1;
+    }
+
+    // offset of the minimal block among 2^level blocks (level 0..5), starting at the one with this entry
+    private static long offset(long entry, int level) {
+        // level k takes k bits, starting at bit VALUE_BITS + k * (k - 1) / 2
+        return level == 0 ? 0 : entry >>> (VALUE_BITS + level * (level - 1) / 2) & ((1L << level) - 1);
+    }
+
+    private void computeBlocks(ForkJoinPool pool, int threads) {
+        forEachSuperBlock(pool, threads, s -> {
+            long firstBlock = s << BLOCK_SHIFT;
+            int count = (int) Math.min(BLOCK, blockCount - firstBlock);
+            long[] minima = new long[count];
+            for (int b = 0; b < count; b++) {
+                long from = (firstBlock + b) << BLOCK_SHIFT;
+                minima[b] = scan(from, Math.min(n, from + BLOCK) - 1);
+            }
+            // offsets[b] of the previous level, relative to b
+            int[] offsets = new int[count];
+            long[] entries = new long[count];
+            for (int b = 0; b < count; b++) {
+                entries[b] = minima[b] + 1;
+            }
+            for (int level = 1; level <= LEVELS_IN_SUPER_BLOCK; level++) {
+                int half = 1 << (level - 1);
+                for (int b = 0; b < count; b++) {
+                    if (b + half < count && minima[b + half + offsets[b + half]] < minima[b + offsets[b]]) {
+                        offsets[b] = half + offsets[b + half];
+                    }
+                    entries[b] |= (long) offsets[b] << (VALUE_BITS + level * (level - 1) / 2);
+                }
+            }
+            for (int b = 0; b < count; b++) {
+                storage.set(HEADER + firstBlock + b, entries[b]);
+            }
+            long min = Long.MAX_VALUE;
+            for (long value : minima) {
+                min = Math.min(min, value);
+            }
+            storage.set(HEADER + blockCount + s, min);
+        });
+    }
+
+    private void computeSuperBlocks(ForkJoinPool pool, int threads) {
+        for (int level = 1; level < levels; level++) {
+            int l = level;
+            long half = 1L << (level - 1);
+            forEachSuperBlock(pool, threads, s -> {
+                long min = superBlockTable(l - 1, s);
+                if (s + half < superBlockCount) {
+                    min = Math.min(min, superBlockTable(l - 1, s + half));
+                }
+                storage.set(HEADER + blockCount + l * superBlockCount + s, min);
+            });
+        }
+    }
+
+    // super-blocks in ranges, several per thread, for load balancing
+    private void forEachSuperBlock(ForkJoinPool pool, int threads, LongConsumer consumer) {
+        long chunk = Math.max(1, (superBlockCount + 4L * threads - 1) / (4L * threads));
+        int chunks = (int) ((superBlockCount + chunk - 1) / chunk);
+        Tasks.parallel(pool, chunks, c -> {
+            for (long s = c * chunk, end = Math.min(superBlockCount, (c + 1) * chunk); s < end; s++) {
+                consumer.accept(s);
+            }
+        });
+    }
+}
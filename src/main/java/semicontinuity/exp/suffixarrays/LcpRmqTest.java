@@ -0,0 +1,69 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+
+public class LcpRmqTest {
+
+    @Test
+    public void sameAsScan() {
+        Random random = new Random(1);
+        for (int n : new int[] {1, 2, 63, 64, 65, 4095, 4096, 4097, 50000, 300000}) {
+            LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+            for (int i = 0; i < n; i++) {
+                lcp.set(i, i == 0 ? -1 : random.nextInt(1 + i % 1000) + (random.nextInt(100) == 0 ? 1L << 40 : 0));
+            }
+            LongArray storage = new OffheapByteArrayAsLongArrayLsb(LcpRmq.storageLength(n));
+            LcpRmq rmq = LcpRmq.build(lcp, storage, 3);
+            for (int q = 0; q < 2000; q++) {
+                int from = random.nextInt(n);
+                int to = q % 4 == 0 ? Math.min(n - 1, from + random.nextInt(200)) : from + random.nextInt(n - from);
+                long expected = Long.MAX_VALUE;
+                for (int i = from; i <= to; i++) {
+                    expected = Math.min(expected, lcp.get(i));
+                }
+                Assert.assertEquals(expected, rmq.min(from, to));
+            }
+            rmq.close();
+            lcp.close();
+        }
+    }
+
+    @Test
+    public void lce() {
+        ByteArrayAsLongArrayAdapter text = SuffixArraysTest.random(20000, 3, 50);
+        long n = text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        LongArray rsa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        for (long i = 0; i < n; i++) {
+            rsa.set(sa.get(i), i);
+        }
+        LcpRmq rmq = LcpRmq.build(lcp, new OffheapByteArrayAsLongArrayLsb(LcpRmq.storageLength(n)));
+
+        Random random = new Random(2);
+        for (int q = 0; q < 2000; q++) {
+            long i = random.nextInt((int) n);
+            long j = q % 10 == 0 ? i : random.nextInt((int) n);
+            long expected = 0;
+            while (i + expected < n && j + expected < n && text.get(i + expected) == text.get(j + expected)) {
+                expected++;
+            }
+            Assert.assertEquals(expected, rmq.lce(rsa, i, j));
+        }
+        rmq.close();
+        rsa.close();
+        lcp.close();
+        sa.close();
+        text.close();
+    }
+}
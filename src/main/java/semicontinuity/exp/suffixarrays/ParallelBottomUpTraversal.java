@@ -0,0 +1,178 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+
+/**
+ * Parallel version of {@link BottomUpTraversal}: reports the same intervals (with the same number of children),
+ * in a different order, from several threads, so the visitor must be thread-safe.
+ * <p>
+ * Suffix array is split into chunks at positions with low LCP: near every split point, the position
+ * with the minimal LCP is taken. Threshold T of a chunk is the larger of the LCP values at its two borders:
+ * intervals in it with lcp &gt; T cannot cross its borders, and are found by traversing chunks in parallel.
+ * Intervals with lcp &lt;= T of their chunks (the few top levels of the tree, that cross chunk borders)
+ * are found with one sequential traversal of only the positions with lcp &lt;= T of their chunk:
+ * skipped runs of positions (that never contain a border) are the child intervals with lcp &gt; T.
+ * So a border inside a long repeat only makes the sequential traversal visit the two chunks next to it,
+ * rather than raising the threshold for all chunks.
+ * <p>
+ * Suffix array and LCP array must allow concurrent reads.
+ */
+public class ParallelBottomUpTraversal implements Closeable {
+    private final int threads;
+    private final ForkJoinPool pool;
+
+    @SuppressWarnings("WeakerAccess")
+    public ParallelBottomUpTraversal(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(String.valueOf(threads));
+        }
+        this.threads = threads;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    public void run(LongArray sa, LongArray lcp, BottomUpTraversal.Visitor visitor) {
+        long n = sa.length();
+        int chunks = (int) Math.min(4L * threads, n / 2);
+        if (threads == 1 || chunks < 2) {
+            new BottomUpTraversal(sa, lcp).run(visitor);
+            return;
+        }
+
+        // chunk c is [borders[c], borders[c + 1])
+        long[] borders = new long[chunks + 1];
+        // lcp at borders, 0 at the ends
+        long[] minima = new long[chunks + 1];
+        long window = Math.max(1, n / (4L * chunks));
+        Tasks.parallel(pool, chunks - 1, j -> {
+            long target = n * (j + 1) / chunks;
+            long best = target;
+            for (long i = Math.max(1, target - window); i < Math.min(n, target + window); i++) {
+                if (lcp.get(i) < lcp.get(best)) {
+                    best = i;
+                }
+            }
+            borders[j + 1] = best;
+            minima[j + 1] = lcp.get(best);
+        });
+        borders[chunks] = n;
+        long[] thresholds = new long[chunks];
+        for (int c = 0; c < chunks; c++) {
+            thresholds[c] = Math.max(minima[c], minima[c + 1]);
+        }
+
+        // positions with lcp <= threshold of their chunk, in order
+        long[] counts = new long[chunks + 1];
+        Tasks.parallel(pool, chunks, c -> {
+            for (long i = Math.max(1, borders[c]); i < borders[c + 1]; i++) {
+                if (lcp.get(i) <= thresholds[c]) {
+                    counts[c + 1]++;
+                }
+            }
+        });
+        Arrays.parallelPrefix(counts, Long::sum);
+        try (LongArray positions = new OffheapByteArrayAsLongArrayLsb(Math.max(1, counts[chunks]))) {
+            Tasks.parallel(pool, chunks, c -> {
+                long k = counts[c];
+                for (long i = Math.max(1, borders[c]); i < borders[c + 1]; i++) {
+                    if (lcp.get(i) <= thresholds[c]) {
+                        positions.set(k++, i);
+                    }
+                }
+            });
+
+            // the last task traverses the top of the tree
+            Tasks.parallel(pool, chunks + 1, c -> {
+                if (c < chunks) {
+                    new BottomUpTraversal(sa, lcp).run(visitor, borders[c], borders[c + 1] - 1, thresholds[c]);
+                } else {
+                    top(lcp, n, positions, counts[chunks], visitor);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+
+    /**
+     * {@link BottomUpTraversal#run(BottomUpTraversal.Visitor)} over the given positions only,
+     * as if LCP at the others were infinite.
+     */
+    private static void top(LongArray lcp, long n, LongArray positions, long count, BottomUpTraversal.Visitor visitor) {
+        Stack stack = new Stack();
+        stack.push(0, 0, 0);
+        long previous = 0;
+        for (long k = 0; k < count; k++) {
+            long i = positions.get(k);
+            long value = lcp.get(i);
+            long left = i - 1;
+            boolean unclaimed = false;
+            if (i > previous + 1) {
+                // skipped positions: an interval with lcp > threshold of the chunk, [previous, i - 1], that ends here
+                left = previous;
+                unclaimed = true;
+                if (value <= stack.value()) {
+                    stack.children[stack.size - 1]++;
+                    unclaimed = false;
+                }
+            }
+            while (value < stack.value()) {
+                stack.size--;
+                visitor.visit(stack.values[stack.size], stack.froms[stack.size], i - 1, stack.children[stack.size]);
+                left = stack.froms[stack.size];
+                unclaimed = true;
+                if (value <= stack.value()) {
+                    stack.children[stack.size - 1]++;
+                    unclaimed = false;
+                }
+            }
+            if (value > stack.value()) {
+                stack.push(value, left, unclaimed ? 1 : 0);
+            }
+            previous = i;
+        }
+        if (previous < n - 1) {
+            // skipped positions at the end
+            stack.children[stack.size - 1]++;
+        }
+        while (stack.size > 0) {
+            stack.size--;
+            visitor.visit(stack.values[stack.size], stack.froms[stack.size], n - 1, stack.children[stack.size]);
+            if (stack.size > 0) {
+                stack.children[stack.size - 1]++;
+            }
+        }
+    }
+
+    // stack of open intervals, as in BottomUpTraversal
+    private static class Stack {
+        long[] values = new long[1024];
+        long[] froms = new long[1024];
+        long[] children = new long[1024];
+        int size;
+
+        long value() {
+            return values[size - 1];
+        }
+
+        void push(long value, long from, long childCount) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                froms = Arrays.copyOf(froms, size * 2);
+                children = Arrays.copyOf(children, size * 2);
+            }
+            values[size] = value;
+            froms[size] = from;
+            children[size] = childCount;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class ParallelBottomUpTraversalTest {
+
+    @Test
+    public void sameAsSequential() {
+        for (int threads : new int[]{2, 3, 8}) {
+            try (ParallelBottomUpTraversal traversal = new ParallelBottomUpTraversal(threads)) {
+                check(traversal, SuffixArraysTest.random(10000, 256, 1));
+                check(traversal, SuffixArraysTest.random(10000, 2, 1));
+                check(traversal, SuffixArraysTest.random(10000, 4, 300));
+                check(traversal, SuffixArraysTest.random(10000, 1, 1));
+                // random text, repeated: some borders are in long repeats, others are not
+                check(traversal, repeated(SuffixArraysTest.random(500, 256, 1), 20));
+                for (int n = 1; n < 100; n += 3) {
+                    check(traversal, SuffixArraysTest.random(n, 3, 2));
+                }
+            }
+        }
+    }
+
+    private static ByteArrayAsLongArrayAdapter repeated(ByteArrayAsLongArrayAdapter text, int times) {
+        long n = text.length();
+        ByteArrayAsLongArrayAdapter result = new ByteArrayAsLongArrayAdapter(n * times);
+        for (long i = 0; i < n * times; i++) {
+            result.set(i, text.get(i % n));
+        }
+        text.close();
+        return result;
+    }
+
+    private static void check(ParallelBottomUpTraversal traversal, ByteArrayAsLongArrayAdapter text) {
+        long n = text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+
+        List<String> expected = new ArrayList<>();
+        new BottomUpTraversal(sa, lcp).run((value, from, to, children) ->
+                expected.add(value + " " + from + " " + to + " " + children));
+        List<String> actual = Collections.synchronizedList(new ArrayList<>());
+        traversal.run(sa, lcp, (value, from, to, children) ->
+                actual.add(value + " " + from + " " + to + " " + children));
+        Collections.sort(expected);
+        Collections.sort(actual);
+        Assert.assertEquals(expected, actual);
+        sa.close();
+        lcp.close();
+        text.close();
+    }
+}
@@ -0,0 +1,75 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import semicontinuity.exp.offheap.BatchedAccess;
+import semicontinuity.exp.offheap.LongArray;
+
+/**
+ * Parallel LCP array construction; produces the same LCP array as
+ * {@link SuffixArrays#computeLCP(LongArray, long, long, LongArray, LongArray, Function)}.
+ * <p>
+ * Uses the permuted LCP algorithm ({@link SuffixArrays#computeLcpPhi}), all three phases of which are data-parallel:
+ * Φ array is computed from chunks of the suffix array; PLCP is computed for ranges of text positions independently;
+ * and it is permuted to suffix array order in chunks.
+ * The recurrence plcp[i] &gt;= plcp[i - 1] - 1 is only used inside a range: at the start of a range,
+ * the value is computed by comparing the suffixes from the first symbol, which is the boundary fix-up;
+ * this costs at most one extra comparison of lcp length per range.
+ * <p>
+ * Text, suffix array, LCP array and arrays from arrayFactory must allow concurrent access to different positions
+ * (off-heap and memory-mapped arrays do, arrays accessed through a buffer pool do not).
+ */
+public class ParallelLcp implements Closeable {
+    private final int threads;
+    private final ForkJoinPool pool;
+
+    @SuppressWarnings("WeakerAccess")
+    public ParallelLcp(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(String.valueOf(threads));
+        }
+        this.threads = threads;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Computes LCP array, lcp[0] = -1.
+     */
+    public LongArray computeLCP(
+            LongArray input, long start, long length, LongArray sa, LongArray lcp,
+            Function<Long, LongArray> arrayFactory)
+    {
+        try (LongArray plcp = arrayFactory.apply(length)) {
+            forEachChunk(length, (from, to) ->
+                    SuffixArrays.computePhi(sa, plcp, from, to, batchedAccess(from, to)));
+            forEachChunk(length, (from, to) ->
+                    SuffixArrays.computePlcp(input, start, length, plcp, from, to));
+            forEachChunk(length, (from, to) ->
+                    SuffixArrays.permute(sa, plcp, lcp, from, to, batchedAccess(from, to)));
+            return lcp;
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+
+    private static BatchedAccess batchedAccess(long from, long to) {
+        return new BatchedAccess(SuffixArrays.batchSize(from, to));
+    }
+
+    // several chunks per thread, for load balancing: ranges of text with long repeats take longer
+    private void forEachChunk(long n, ChunkConsumer consumer) {
+        long chunk = Math.max(1, (n + 4L * threads - 1) / (4L * threads));
+        int chunks = (int) ((n + chunk - 1) / chunk);
+        Tasks.parallel(pool, chunks, i -> consumer.accept(i * chunk, Math.min(n, (i + 1) * chunk)));
+    }
+
+    private interface ChunkConsumer {
+        void accept(long from, long to);
+    }
+}
@@ -0,0 +1,42 @@
+package semicontinuity.exp.suffixarrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class ParallelLcpTest {
+
+    @Test
+    public void sameAsKasai() {
+        for (int threads : new int[]{1, 3, 8}) {
+            try (ParallelLcp parallelLcp = new ParallelLcp(threads)) {
+                check(parallelLcp, SuffixArraysTest.random(10000, 256, 1));
+                check(parallelLcp, SuffixArraysTest.random(10000, 2, 1));
+                check(parallelLcp, SuffixArraysTest.random(10000, 4, 300));
+                for (int n = 1; n < 20; n++) {
+                    check(parallelLcp, SuffixArraysTest.random(n, 3, 2));
+                }
+            }
+        }
+    }
+
+    private static void check(ParallelLcp parallelLcp, ByteArrayAsLongArrayAdapter text) {
+        long n = text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        LongArray expected = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, sa, expected, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        LongArray actual = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        parallelLcp.computeLCP(text, 0, n, sa, actual, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(expected.get(i), actual.get(i));
+        }
+        expected.close();
+        actual.close();
+        sa.close();
+        text.close();
+    }
+}
@@ -0,0 +1,507 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.LongArrayView;
+import semicontinuity.exp.offheap.OffheapBitVector;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+
+/**
+ * Parallel SA-IS suffix sorting; produces the same suffix array as {@link Sais#suffixsort(LongArray, LongArray, long, long)}.
+ * <p>
+ * Type classification, bucket counting, LMS-substring naming and construction of the reduced problem
+ * are data-parallel over chunks of the text or of the suffix array; the reduced problem is solved recursively
+ * with the same scheme.
+ * <p>
+ * Induced sorting scans the suffix array in blocks, and is pipelined: while the current block is processed
+ * sequentially (bucket pointers must be updated in order), worker threads fetch symbols and types of predecessors
+ * of the suffixes in the next block (random reads of the text, that dominate the running time).
+ * Entries of the next block, that are written after it was prepared, are detected by comparing with the prepared
+ * values, and resolved in place.
+ * <p>
+ * Text and suffix array must allow concurrent access to different positions
+ * (off-heap and memory-mapped arrays do, arrays accessed through a buffer pool do not).
+ * Types of suffixes take n bits of extra memory on each level of recursion.
+ */
+public class ParallelSais implements Closeable {
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 18;
+
+    private static final long EMPTY = -1;
+    // marks a slot of a prepared block, that must be looked up by the main thread
+    private static final long NOT_PREPARED = Long.MIN_VALUE;
+    private static final int L = 0;
+    private static final int S = 1;
+    private static final int UNKNOWN = 2;
+    // limits memory for per-chunk histograms
+    private static final long MAX_HISTOGRAM_ENTRIES = 1 << 22;
+
+    private final int threads;
+    private final int blockSize;
+    private final ForkJoinPool pool;
+
+    @SuppressWarnings("WeakerAccess")
+    public ParallelSais(int threads) {
+        this(threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param blockSize number of suffix array entries in a block of induced sorting
+     */
+    @SuppressWarnings("WeakerAccess")
+    public ParallelSais(int threads, int blockSize) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(String.valueOf(threads));
+        }
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException(String.valueOf(blockSize));
+        }
+        this.threads = threads;
+        this.blockSize = blockSize;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Computes suffix array of T[0..n-1] in {0..k-1}^n.
+     */
+    public void suffixsort(LongArray t, LongArray sa, long n, long k) {
+        if (n == 0) {
+            return;
+        }
+        saIs(t, sa, 0, n, k);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+
+    // fs: number of free entries in sa after the first n, that can be used as working space
+    private void saIs(LongArray t, LongArray sa, long fs, long n, long k) {
+        if (n == 1) {
+            sa.set(0, 0);
+            return;
+        }
+        OffheapBitVector types = classify(t, n);
+
+        // stage 1: sort LMS-substrings
+        LongArray counts = counts(t, sa, fs, n, k);
+        LongArray buckets = buckets(sa, fs, n, k);
+        fill(sa, 0, n, EMPTY);
+        bucketEnds(counts, buckets, k);
+        for (long i = 1; i < n; i++) {
+            if (isLms(types, i)) {
+                long c = t.get(i);
+                long b = buckets.get(c) - 1;
+                buckets.set(c, b);
+                sa.set(b, i);
+            }
+        }
+        induce(t, sa, types, counts, buckets, n, k);
+        counts.close();
+        buckets.close();
+
+        long m = compactLms(sa, types, n);
+        fill(sa, m, m + (n >> 1), EMPTY);
+        long names = name(t, sa, types, n, m);
+
+        // stage 2: if names are not unique, sort LMS-suffixes by solving the reduced problem
+        if (names < m) {
+            long reduced = n + fs - m;
+            for (long i = m + (n >> 1) - 1, j = n + fs - 1; m <= i; --i) {
+                long name = sa.get(i);
+                if (name != EMPTY) {
+                    sa.set(j--, name);
+                }
+            }
+            saIs(new LongArrayView(sa, reduced), sa, fs + n - m * 2, m, names);
+            lmsPositions(types, sa, reduced, n);
+            forEachChunk(m, (from, to) -> {
+                for (long i = from; i < to; i++) {
+                    sa.set(i, sa.get(reduced + sa.get(i)));
+                }
+            });
+        }
+
+        // stage 3: induce the suffix array from sorted LMS-suffixes
+        counts = counts(t, sa, fs, n, k);
+        buckets = buckets(sa, fs, n, k);
+        bucketEnds(counts, buckets, k);
+        fill(sa, m, n, EMPTY);
+        for (long i = m - 1; 0 <= i; --i) {
+            long j = sa.get(i);
+            sa.set(i, EMPTY);
+            long c = t.get(j);
+            long b = buckets.get(c) - 1;
+            buckets.set(c, b);
+            sa.set(b, j);
+        }
+        induce(t, sa, types, counts, buckets, n, k);
+        counts.close();
+        buckets.close();
+        types.close();
+    }
+
+    /**
+     * Computes types of all suffixes (set bit for S-type).
+     * The type of the last position of a chunk can depend on the next chunk (through a run of equal symbols),
+     * so the first pass finds types of chunk starts, where possible, and the second pass writes types.
+     */
+    private OffheapBitVector classify(LongArray t, long n) {
+        OffheapBitVector types = new OffheapBitVector(n);
+        long chunk = chunkSize(n);
+        int chunks = chunks(n, chunk);
+        int[] startTypes = new int[chunks];
+        Tasks.parallel(pool, chunks,
+                c -> startTypes[c] = classify(t, types, n, c * chunk, Math.min(n, (c + 1) * chunk), UNKNOWN, false));
+
+        int[] incoming = new int[chunks];
+        int next = L;
+        for (int c = chunks - 1; c >= 0; c--) {
+            incoming[c] = next;
+            if (startTypes[c] != UNKNOWN) {
+                next = startTypes[c];
+            }
+        }
+        Tasks.parallel(pool, chunks,
+                c -> classify(t, types, n, c * chunk, Math.min(n, (c + 1) * chunk), incoming[c], true));
+        return types;
+    }
+
+    /**
+     * @param incoming type of the position 'to'
+     * @return type of the position 'from'
+     */
+    private static int classify(LongArray t, OffheapBitVector types, long n, long from, long to, int incoming, boolean write) {
+        int next = incoming;
+        for (long i = to - 1; i >= from; i--) {
+            int type;
+            if (i == n - 1) {
+                type = L;
+            } else {
+                long c0 = t.get(i);
+                long c1 = t.get(i + 1);
+                type = c0 < c1 ? S : c0 > c1 ? L : next;
+            }
+            if (write && type == S) {
+                types.set(i);
+            }
+            next = type;
+        }
+        return next;
+    }
+
+    private static boolean isLms(OffheapBitVector types, long i) {
+        return i > 0 && types.get(i) && !types.get(i - 1);
+    }
+
+    private LongArray counts(LongArray t, LongArray sa, long fs, long n, long k) {
+        LongArray counts = k <= fs ? new LongArrayView(sa, n) : new OffheapByteArrayAsLongArrayLsb(k);
+        long chunk = chunkSize(n);
+        int chunks = chunks(n, chunk);
+        if (chunks * k <= MAX_HISTOGRAM_ENTRIES) {
+            long[][] histograms = new long[chunks][];
+            Tasks.parallel(pool, chunks, c -> {
+                long[] histogram = new long[(int) k];
+                for (long i = c * chunk, end = Math.min(n, i + chunk); i < end; i++) {
+                    histogram[(int) t.get(i)]++;
+                }
+                histograms[c] = histogram;
+            });
+            for (int symbol = 0; symbol < k; symbol++) {
+                long sum = 0;
+                for (long[] histogram : histograms) {
+                    sum += histogram[symbol];
+                }
+                counts.set(symbol, sum);
+            }
+        } else {
+            for (long i = 0; i < k; ++i) {
+                counts.set(i, 0);
+            }
+            for (long i = 0; i < n; ++i) {
+                counts.update(t.get(i), 1);
+            }
+        }
+        return counts;
+    }
+
+    private static LongArray buckets(LongArray sa, long fs, long n, long k) {
+        return 2 * k <= fs ? new LongArrayView(sa, n + k) : new OffheapByteArrayAsLongArrayLsb(k);
+    }
+
+    private static void bucketStarts(LongArray counts, LongArray buckets, long k) {
+        long sum = 0;
+        for (long i = 0; i < k; ++i) {
+            buckets.set(i, sum);
+            sum += counts.get(i);
+        }
+    }
+
+    private static void bucketEnds(LongArray counts, LongArray buckets, long k) {
+        long sum = 0;
+        for (long i = 0; i < k; ++i) {
+            sum += counts.get(i);
+            buckets.set(i, sum);
+        }
+    }
+
+    private void induce(LongArray t, LongArray sa, OffheapBitVector types, LongArray counts, LongArray buckets, long n, long k) {
+        bucketStarts(counts, buckets, k);
+        induceL(t, sa, types, buckets, n);
+        bucketEnds(counts, buckets, k);
+        induceS(t, sa, types, buckets, n);
+    }
+
+    // left-to-right scan, that places L-type suffixes at the starts of their buckets
+    private void induceL(LongArray t, LongArray sa, OffheapBitVector types, LongArray buckets, long n) {
+        long c = t.get(n - 1);
+        long h = buckets.get(c);
+        buckets.set(c, h + 1);
+        sa.set(h, n - 1);
+
+        int size = (int) Math.min(blockSize, n);
+        Prepared current = new Prepared(size);
+        Prepared next = new Prepared(size);
+        prepare(current, t, sa, types, n, 0, size, true);
+        for (long from = 0; from < n; from += size) {
+            long to = Math.min(n, from + size);
+            current.await();
+            if (to < n) {
+                prepare(next, t, sa, types, n, to, Math.min(n, to + size), true);
+            }
+            for (long p = from; p < to; p++) {
+                long j = sa.get(p);
+                int slot = (int) (p - from);
+                long symbol = j == current.values[slot] ? current.symbols[slot] : lSymbol(t, types, j);
+                if (symbol >= 0) {
+                    long b = buckets.get(symbol);
+                    buckets.set(symbol, b + 1);
+                    sa.set(b, j - 1);
+                }
+            }
+            Prepared swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    // right-to-left scan, that places S-type suffixes at the ends of their buckets
+    private void induceS(LongArray t, LongArray sa, OffheapBitVector types, LongArray buckets, long n) {
+        int size = (int) Math.min(blockSize, n);
+        Prepared current = new Prepared(size);
+        Prepared next = new Prepared(size);
+        prepare(current, t, sa, types, n, n - size, n, false);
+        for (long to = n; to > 0; to -= size) {
+            long from = Math.max(0, to - size);
+            current.await();
+            if (from > 0) {
+                prepare(next, t, sa, types, n, Math.max(0, from - size), from, false);
+            }
+            for (long p = to - 1; p >= from; p--) {
+                long j = sa.get(p);
+                int slot = (int) (p - current.from);
+                long symbol = j == current.values[slot] ? current.symbols[slot] : sSymbol(t, types, j);
+                if (symbol >= 0) {
+                    long b = buckets.get(symbol) - 1;
+                    buckets.set(symbol, b);
+                    sa.set(b, j - 1);
+                }
+            }
+            Prepared swap = current;
+            current = next;
+            next = swap;
+        }
+    }
+
+    // symbol of the predecessor of suffix j, if it is L-type, or -1
+    private static long lSymbol(LongArray t, OffheapBitVector types, long j) {
+        return j > 0 && !types.get(j - 1) ? t.get(j - 1) : -1;
+    }
+
+    // symbol of the predecessor of suffix j, if it is S-type, or -1
+    private static long sSymbol(LongArray t, OffheapBitVector types, long j) {
+        return j > 0 && types.get(j - 1) ? t.get(j - 1) : -1;
+    }
+
+    // Values of sa in the block can be written by the main thread concurrently, and reads of them are not atomic
+    // (e.g. in 5-byte arrays), so a value, that is out of range, is not looked up; a torn, but valid one
+    // is looked up harmlessly, and then rejected by the main thread, as it differs from the final value.
+    private void prepare(
+            Prepared block, LongArray t, LongArray sa, OffheapBitVector types, long n, long from, long to, boolean left) {
+        block.from = from;
+        block.tasks.clear();
+        long piece = (to - from + threads - 1) / threads;
+        for (long start = from; start < to; start += piece) {
+            long first = start;
+            long end = Math.min(to, start + piece);
+            block.tasks.add(pool.submit(() -> {
+                for (long p = first; p < end; p++) {
+                    long j = sa.get(p);
+                    int slot = (int) (p - from);
+                    if (0 < j && j <= n) {
+                        block.values[slot] = j;
+                        block.symbols[slot] = left ? lSymbol(t, types, j) : sSymbol(t, types, j);
+                    } else {
+                        block.values[slot] = NOT_PREPARED;
+                    }
+                }
+            }));
+        }
+    }
+
+    /**
+     * Moves sorted LMS-suffixes to the beginning of sa.
+     * @return number of LMS-suffixes
+     */
+    private long compactLms(LongArray sa, OffheapBitVector types, long n) {
+        forEachChunk(n, (from, to) -> {
+            for (long p = from; p < to; p++) {
+                if (!isLms(types, sa.get(p))) {
+                    sa.set(p, EMPTY);
+                }
+            }
+        });
+        long m = 0;
+        for (long p = 0; p < n; p++) {
+            long j = sa.get(p);
+            if (j != EMPTY) {
+                sa.set(m++, j);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Assigns names to sorted LMS-substrings in sa[0..m-1], equal substrings get equal names.
+     * Name of LMS-substring, starting at p, is stored at sa[m + p / 2].
+     * @return number of distinct names
+     */
+    private long name(LongArray t, LongArray sa, OffheapBitVector types, long n, long m) {
+        if (m == 0) {
+            return 0;
+        }
+        OffheapBitVector differs = new OffheapBitVector(m);
+        long chunk = chunkSize(m);
+        int chunks = chunks(m, chunk);
+        long[] firstNames = new long[chunks + 1];
+        Tasks.parallel(pool, chunks, c -> {
+            long count = 0;
+            for (long i = c * chunk, end = Math.min(m, i + chunk); i < end; i++) {
+                if (i == 0 || differ(t, types, n, sa.get(i - 1), sa.get(i))) {
+                    differs.set(i);
+                    count++;
+                }
+            }
+            firstNames[c + 1] = count;
+        });
+        for (int c = 0; c < chunks; c++) {
+            firstNames[c + 1] += firstNames[c];
+        }
+        Tasks.parallel(pool, chunks, c -> {
+            long name = firstNames[c] - 1;
+            for (long i = c * chunk, end = Math.min(m, i + chunk); i < end; i++) {
+                if (differs.get(i)) {
+                    name++;
+                }
+                sa.set(m + (sa.get(i) >> 1), name);
+            }
+        });
+        differs.close();
+        return firstNames[chunks];
+    }
+
+    // LMS-substrings are equal, if their symbols and types are equal up to the next LMS-position
+    private static boolean differ(LongArray t, OffheapBitVector types, long n, long p, long q) {
+        for (long d = 0; ; d++) {
+            if (p + d == n || q + d == n) {
+                return true;
+            }
+            if (t.get(p + d) != t.get(q + d) || types.get(p + d) != types.get(q + d)) {
+                return true;
+            }
+            if (d > 0 && isLms(types, p + d)) {
+                return false;
+            }
+        }
+    }
+
+    // writes positions of LMS-suffixes in text order to sa[offset...]
+    private void lmsPositions(OffheapBitVector types, LongArray sa, long offset, long n) {
+        long chunk = chunkSize(n);
+        int chunks = chunks(n, chunk);
+        long[] starts = new long[chunks + 1];
+        Tasks.parallel(pool, chunks, c -> {
+            long count = 0;
+            for (long i = c * chunk, end = Math.min(n, i + chunk); i < end; i++) {
+                if (isLms(types, i)) {
+                    count++;
+                }
+            }
+            starts[c + 1] = count;
+        });
+        for (int c = 0; c < chunks; c++) {
+            starts[c + 1] += starts[c];
+        }
+        Tasks.parallel(pool, chunks, c -> {
+            long j = offset + starts[c];
+            for (long i = c * chunk, end = Math.min(n, i + chunk); i < end; i++) {
+                if (isLms(types, i)) {
+                    sa.set(j++, i);
+                }
+            }
+        });
+    }
+
+    private void fill(LongArray array, long from, long to, long value) {
+        forEachChunk(to - from, (start, end) -> {
+            for (long i = from + start; i < from + end; i++) {
+                array.set(i, value);
+            }
+        });
+    }
+
+
+    // chunks are multiples of 64, so that bits of different chunks are in different words
+    private long chunkSize(long n) {
+        long chunk = (n + 4L * threads - 1) / (4L * threads);
+        return Math.max(64, (chunk + 63) & ~63L);
+    }
+
+    private static int chunks(long n, long chunk) {
+        return (int) ((n + chunk - 1) / chunk);
+    }
+
+    private void forEachChunk(long n, ChunkConsumer consumer) {
+        long chunk = chunkSize(n);
+        Tasks.parallel(pool, chunks(n, chunk), c -> consumer.accept(c * chunk, Math.min(n, (c + 1) * chunk)));
+    }
+
+    private interface ChunkConsumer {
+        void accept(long from, long to);
+    }
+
+    // predecessor symbols of suffixes in a block of sa, fetched ahead of the sequential scan
+    private static class Prepared {
+        final long[] values;
+        final long[] symbols;
+        final List<Future<?>> tasks = new ArrayList<>();
+        long from;
+
+        Prepared(int size) {
+            this.values = new long[size];
+            this.symbols = new long[size];
+        }
+
+        void await() {
+            for (Future<?> task : tasks) {
+                Tasks.join(task);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Random;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+/**
+ * Measures scaling of {@link ParallelSais} with the number of threads, relative to sequential {@link Sais},
+ * on random and repetitive byte texts.
+ * Arguments: text length (default 2^26), number of iterations (default 3; the best time is reported,
+ * the first iteration also serves as a warm-up), thread counts, separated with commas
+ * (default 1, 2, 4, ... up to the number of available processors).
+ */
+public class ParallelSaisBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 26;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int[] threads = args.length > 2 ? threads(args[2]) : threads(Runtime.getRuntime().availableProcessors());
+        run("random", random(n, 256, 1), iterations, threads);
+        run("repetitive", random(n, 4, 1000), iterations, threads);
+    }
+
+    private static void run(String name, OffheapByteArray bytes, int iterations, int[] threads) {
+        long n = bytes.length();
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(bytes, 0);
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+
+        long sequential = Long.MAX_VALUE;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long start = System.nanoTime();
+            Sais.suffixsort(text, sa, n, 256);
+            sequential = Math.min(sequential, System.nanoTime() - start);
+        }
+        long checksum = checksum(sa, n);
+        System.out.printf("%s n=%d: sequential %d ms%n", name, n, sequential / 1000000);
+
+        for (int t : threads) {
+            long best = Long.MAX_VALUE;
+            try (ParallelSais parallelSais = new ParallelSais(t)) {
+                for (int iteration = 0; iteration < iterations; iteration++) {
+                    long start = System.nanoTime();
+                    parallelSais.suffixsort(text, sa, n, 256);
+                    best = Math.min(best, System.nanoTime() - start);
+                    if (checksum(sa, n) != checksum) {
+                        throw new IllegalStateException("Suffix arrays differ");
+                    }
+                }
+            }
+            System.out.printf("%s n=%d: %d threads %d ms, speedup %.2f%n",
+                    name, n, t, best / 1000000, (double) sequential / best);
+        }
+        sa.close();
+        text.close();
+    }
+
+    private static int[] threads(String list) {
+        String[] items = list.split(",");
+        int[] result = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            result[i] = Integer.parseInt(items[i].trim());
+        }
+        return result;
+    }
+
+    // powers of 2 up to max, and max
+    private static int[] threads(int max) {
+        int count = 32 - Integer.numberOfLeadingZeros(max) + (Integer.bitCount(max) == 1 ? 0 : 1);
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = Math.min(max, 1 << i);
+        }
+        return result;
+    }
+
+    private static long checksum(LongArray sa, long n) {
+        long sum = 0;
+        for (long i = 0; i < n; i++) {
+            sum = sum * 31 + sa.get(i);
+        }
+        return sum;
+    }
+
+    private static OffheapByteArray random(int n, int alphabetSize, int repeatLength) {
+        Random random = new Random(n);
+        OffheapByteArray bytes = new OffheapByteArray(n);
+        for (int i = 0; i < n; i++) {
+            bytes.set(i, repeatLength > 1 && i >= repeatLength && random.nextInt(50) != 0
+                    ? bytes.get(i - repeatLength)
+                    : (byte) random.nextInt(alphabetSize));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,86 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class ParallelSaisTest {
+
+    @Test
+    public void sameAsSais() {
+        try (ParallelSais sais = new ParallelSais(4, 100)) {
+            for (int alphabetSize : new int[]{1, 2, 3, 4, 256}) {
+                check(sais, random(3000, alphabetSize));
+            }
+            check(sais, repetitive(5000));
+            check(sais, random(1, 2));
+            check(sais, random(2, 2));
+        }
+    }
+
+    @Test
+    public void smallTexts() {
+        try (ParallelSais sais = new ParallelSais(3, 7)) {
+            for (int n = 1; n < 40; n++) {
+                check(sais, random(n, 2));
+                check(sais, repetitive(n));
+            }
+        }
+    }
+
+    private static void check(ParallelSais sais, ByteArrayAsLongArrayAdapter text) {
+        long n = text.length();
+        LongArray expected = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, expected, n, 256);
+        LongArray actual = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        sais.suffixsort(text, actual, n, 256);
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(expected.get(i), actual.get(i));
+        }
+        for (long i = 1; i < n; i++) {
+            Assert.assertTrue(less(text, actual.get(i - 1), actual.get(i)));
+        }
+        expected.close();
+        actual.close();
+        text.close();
+    }
+
+    private static boolean less(LongArray text, long i, long j) {
+        long n = text.length();
+        while (i < n && j < n && text.get(i) == text.get(j)) {
+            i++;
+            j++;
+        }
+        return i == n || (j < n && text.get(i) < text.get(j));
+    }
+
+    private static ByteArrayAsLongArrayAdapter random(int n, int alphabetSize) {
+        Random random = new Random(n * 31 + alphabetSize);
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(n);
+        for (int i = 0; i < n; i++) {
+            text.set(i, random.nextInt(alphabetSize));
+        }
+        return text;
+    }
+
+    // Fibonacci-like words, that need several levels of recursion
+    private static ByteArrayAsLongArrayAdapter repetitive(int n) {
+        StringBuilder a = new StringBuilder("a");
+        StringBuilder b = new StringBuilder("ab");
+        while (b.length() < n) {
+            StringBuilder c = new StringBuilder(b).append(a);
+            a = b;
+            b = c;
+        }
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(n);
+        for (int i = 0; i < n; i++) {
+            text.set(i, b.charAt(i));
+        }
+        return text;
+    }
+}
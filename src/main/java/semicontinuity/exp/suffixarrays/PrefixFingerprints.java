@@ -0,0 +1,254 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.Closeable;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import semicontinuity.exp.offheap.LongArray;
+
+/**
+ * Karp-Rabin fingerprints of text prefixes, for substring equality and longest common extension (LCE) queries.
+ * <p>
+ * Fingerprint of prefix of length i is H(i) = sum text[k] * B^(i-1-k) mod P, with P = 2^61-1 and random base B.
+ * Then fingerprint of text[i, i + len) is H(i + len) - H(i) * B^len.
+ * Different substrings collide with probability at most len / P.
+ * <p>
+ * Only every sampleRate-th prefix fingerprint is stored (8 bytes each), others are recomputed from the nearest
+ * sample with at most sampleRate - 1 steps; B^len is a product of at most 6 powers, looked up in tables
+ * of B^(d * 2048^k) for digits d of len in base 2048 (6 * 2048 longs, computed on open),
+ * so substring equality is O(sampleRate): O(1) for a fixed sample rate.
+ * LCE is an exponential search, then a binary search over equality, so it is O(sampleRate * log n);
+ * O(log n) with sampleRate 1 (8n bytes).
+ * <p>
+ * Storage is a LongArray with a small header (base, sample rate, length),
+ * so it can be persisted in a file next to sa/lcp, and opened later.
+ * The samples are built with a prefix scan, that is parallel, if several threads are given
+ * (then storage must allow concurrent writes to different positions).
+ */
+public class PrefixFingerprints implements Closeable {
+    private static final long P = (1L << 61) - 1;
+    private static final long MASK30 = (1L << 30) - 1;
+    private static final long MASK31 = (1L << 31) - 1;
+    private static final int HEADER = 3;
+    private static final int DIGIT_BITS = 11;
+    private static final int DIGITS = (63 + DIGIT_BITS - 1) / DIGIT_BITS;
+
+    private final LongArray text;
+    private final LongArray storage;
+    private final long base;
+    private final int sampleRate;
+    private final long length;
+    // B^(2^k)
+    private final long[] basePowers = new long[64];
+    // B^(d * 2^(DIGIT_BITS * k)) in powers[k][d]
+    private final long[][] powers = new long[DIGITS][1 << DIGIT_BITS];
+
+    /**
+     * Opens fingerprints, previously built with {@link #build(LongArray, LongArray, int, long)}.
+     * @param text text symbols, in the range [0-255]
+     */
+    @SuppressWarnings("WeakerAccess")
+    public PrefixFingerprints(LongArray text, LongArray storage) {
+        this.text = text;
+        this.storage = storage;
+        this.base = storage.get(0);
+        this.sampleRate = (int) storage.get(1);
+        this.length = storage.get(2);
+        basePowers[0] = base;
+        for (int k = 1; k < 64; k++) {
+            basePowers[k] = mulMod(basePowers[k - 1], basePowers[k - 1]);
+        }
+        for (int k = 0; k < DIGITS; k++) {
+            powers[k][0] = 1;
+            for (int d = 1; d < powers[k].length; d++) {
+                powers[k][d] = mulMod(powers[k][d - 1], basePowers[DIGIT_BITS * k]);
+            }
+        }
+    }
+
+    /**
+     * @return required length of storage
+     */
+    public static long storageLength(long textLength, int sampleRate) {
+        return HEADER + textLength / sampleRate + 1;
+    }
+
+    /**
+     * Computes fingerprints of the text into storage of length {@link #storageLength(long, int)}.
+     */
+    public static PrefixFingerprints build(LongArray text, LongArray storage, int sampleRate, long seed) {
+        return build(text, storage, sampleRate, seed, 1);
+    }
+
+    /**
+     * Computes fingerprints of the text into storage of length {@link #storageLength(long, int)},
+     * on the given number of threads.
+     */
+    public static PrefixFingerprints build(LongArray text, LongArray storage, int sampleRate, long seed, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(String.valueOf(threads));
+        }
+        long n = text.length();
+        storage.set(0, 2 + Math.floorMod(new Random(seed).nextLong(), P - 3));
+        storage.set(1, sampleRate);
+        storage.set(2, n);
+        PrefixFingerprints result = new PrefixFingerprints(text, storage);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            result.computeSamples(pool, threads);
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return fingerprint of text[0, i)
+     */
+    public long prefix(long i) {
+        long sample = i / sampleRate;
+        long h = storage.get(HEADER + sample);
+        for (long k = sample * sampleRate; k < i; k++) {
+            h = step(h, text.get(k));
+        }
+        return h;
+    }
+
+    /**
+     * @return fingerprint of text[from, from + len)
+     */
+    public long fingerprint(long from, long len) {
+        return subMod(prefix(from + len), mulMod(prefix(from), power(len)));
+    }
+
+    /**
+     * @return true if text[i, i + len) and text[j, j + len) are (with high probability) equal
+     */
+    public boolean equal(long i, long j, long len) {
+        return i == j || fingerprint(i, len) == fingerprint(j, len);
+    }
+
+    /**
+     * @return length of the longest common prefix of suffixes i and j (correct with high probability)
+     */
+    public long lce(long i, long j) {
+        long max = length - Math.max(i, j);
+        if (i == j) {
+            return max;
+        }
+        long hi = prefix(i);
+        long hj = prefix(j);
+        // exponential search: text[i, i + 2^k) and text[j, j + 2^k) are equal for all k < bit
+        int bit = 0;
+        while (bit < 63 && (1L << bit) <= max && equal(i, j, hi, hj, 1L << bit, basePowers[bit])) {
+            bit++;
+        }
+        if (bit == 0) {
+            return 0;
+        }
+        // then binary search by bits of the length, below 2^(bit - 1)
+        long lo = 1L << (bit - 1);
+        long power = basePowers[bit - 1];
+        for (int b = bit - 2; b >= 0; b--) {
+            long len = lo + (1L << b);
+            long p = mulMod(power, basePowers[b]);
+            if (len <= max && equal(i, j, hi, hj, len, p)) {
+                lo = len;
+                power = p;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+
+
+    // equality of text[i, i + len) and text[j, j + len), given H(i), H(j) and B^len
+    private boolean equal(long i, long j, long hi, long hj, long len, long power) {
+        return subMod(prefix(i + len), mulMod(hi, power)) == subMod(prefix(j + len), mulMod(hj, power));
+    }
+
+    private void computeSamples(ForkJoinPool pool, int threads) {
+        long samples = length / sampleRate + 1;
+        // several blocks per thread, for load balancing
+        int blockCount = (int) Math.min(samples, threads == 1 ? 1 : 4L * threads);
+        long samplesPerBlock = (samples + blockCount - 1) / blockCount;
+        long blockLength = samplesPerBlock * sampleRate;
+
+        // 1. fingerprints of text blocks, independently
+        long[] local = new long[blockCount];
+        Tasks.parallel(pool, blockCount, b -> {
+            long h = 0;
+            for (long k = b * blockLength, end = Math.min(length, k + blockLength); k < end; k++) {
+                h = step(h, text.get(k));
+            }
+            local[b] = h;
+        });
+
+        // 2. prefix fingerprints at block starts
+        long[] start = new long[blockCount];
+        for (int b = 1; b < blockCount; b++) {
+            start[b] = addMod(mulMod(start[b - 1], power(blockLength)), local[b - 1]);
+        }
+
+        // 3. samples inside blocks
+        Tasks.parallel(pool, blockCount, b -> {
+            long h = start[b];
+            long k = b * blockLength;
+            for (long s = b * samplesPerBlock, end = Math.min(samples, s + samplesPerBlock); s < end; s++) {
+                storage.set(HEADER + s, h);
+                for (long kEnd = Math.min(length, k + sampleRate); k < kEnd; k++) {
+                    h = step(h, text.get(k));
+                }
+            }
+        });
+    }
+
+    private long step(long h, long symbol) {
+        // symbols are shifted by 1, so that zero symbols contribute to the fingerprint
+        return addMod(mulMod(h, base), symbol + 1);
+    }
+
+    // B^exponent, by digits of the exponent
+    private long power(long exponent) {
+        long result = powers[0][(int) (exponent & ((1 << DIGIT_BITS) - 1))];
+        exponent >>>= DIGIT_BITS;
+        for (int k = 1; exponent != 0; k++, exponent >>>= DIGIT_BITS) {
+            result = mulMod(result, powers[k][(int) (exponent & ((1 << DIGIT_BITS) - 1))]);
+        }
+        return result;
+    }
+
+    static long mulMod(long a, long b) {
+        long au = a >>> 31;
+        long ad = a & MASK31;
+        long bu = b >>> 31;
+        long bd = b & MASK31;
+        long mid = ad * bu + au * bd;
+        long midu = mid >>> 30;
+        long midd = mid & MASK30;
+        return mod(au * bu * 2 + midu + (midd << 31) + ad * bd);
+    }
+
+    private static long mod(long x) {
+        long r = (x & P) + (x >>> 61);
+        return r >= P ? r - P : r;
+    }
+
+    private static long addMod(long a, long b) {
+        long r = a + b;
+        return r >= P ? r - P : r;
+    }
+
+    private static long subMod(long a, long b) {
+        long r = a - b;
+        return r < 0 ? r + P : r;
+    }
+}
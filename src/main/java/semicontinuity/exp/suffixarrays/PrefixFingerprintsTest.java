@@ -0,0 +1,96 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+
+public class PrefixFingerprintsTest {
+
+    @Test
+    public void equalAndLce() {
+        for (int sampleRate : new int[]{1, 3, 16}) {
+            check(text(5000, 2), sampleRate);
+            check(text(777, 256), sampleRate);
+        }
+    }
+
+    @Test
+    public void reopen() {
+        ByteArrayAsLongArrayAdapter text = text(100, 4);
+        OffheapByteArrayAsLongArrayLsb storage =
+                new OffheapByteArrayAsLongArrayLsb(PrefixFingerprints.storageLength(100, 8));
+        PrefixFingerprints built = PrefixFingerprints.build(text, storage, 8, 1);
+        PrefixFingerprints opened = new PrefixFingerprints(text, storage);
+        for (long i = 0; i <= 100; i++) {
+            Assert.assertEquals(built.prefix(i), opened.prefix(i));
+        }
+        opened.close();
+        text.close();
+    }
+
+    @Test
+    public void parallelBuild() {
+        ByteArrayAsLongArrayAdapter text = text(10_007, 256);
+        OffheapByteArrayAsLongArrayLsb storage =
+                new OffheapByteArrayAsLongArrayLsb(PrefixFingerprints.storageLength(10_007, 3));
+        OffheapByteArrayAsLongArrayLsb parallelStorage =
+                new OffheapByteArrayAsLongArrayLsb(PrefixFingerprints.storageLength(10_007, 3));
+        PrefixFingerprints.build(text, storage, 3, 1);
+        PrefixFingerprints.build(text, parallelStorage, 3, 1, 4);
+        for (long i = 0; i < storage.length(); i++) {
+            Assert.assertEquals(storage.get(i), parallelStorage.get(i));
+        }
+        storage.close();
+        parallelStorage.close();
+        text.close();
+    }
+
+    @Test
+    public void mulMod() {
+        long p = (1L << 61) - 1;
+        Assert.assertEquals(1, PrefixFingerprints.mulMod(p - 1, p - 1));
+        Assert.assertEquals(1, PrefixFingerprints.mulMod(1L << 60, 2));
+        Assert.assertEquals(6, PrefixFingerprints.mulMod(2, 3));
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text, int sampleRate) {
+        int n = (int) text.length();
+        OffheapByteArrayAsLongArrayLsb storage =
+                new OffheapByteArrayAsLongArrayLsb(PrefixFingerprints.storageLength(n, sampleRate));
+        PrefixFingerprints fingerprints = PrefixFingerprints.build(text, storage, sampleRate, n);
+        Random random = new Random(sampleRate);
+        for (int q = 0; q < 2000; q++) {
+            int i = random.nextInt(n);
+            int j = random.nextInt(n);
+            long lce = naiveLce(text, i, j);
+            Assert.assertEquals(lce, fingerprints.lce(i, j));
+            Assert.assertTrue(fingerprints.equal(i, j, lce));
+            if (lce < n - Math.max(i, j)) {
+                Assert.assertFalse(fingerprints.equal(i, j, lce + 1));
+            }
+        }
+        fingerprints.close();
+        text.close();
+    }
+
+    private static long naiveLce(ByteArrayAsLongArrayAdapter text, long i, long j) {
+        long h = 0;
+        while (Math.max(i, j) + h < text.length() && text.get(i + h) == text.get(j + h)) {
+            h++;
+        }
+        return h;
+    }
+
+    private static ByteArrayAsLongArrayAdapter text(int n, int alphabetSize) {
+        Random random = new Random(n);
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(n);
+        for (int i = 0; i < n; i++) {
+            text.set(i, random.nextInt(alphabetSize));
+        }
+        return text;
+    }
+}
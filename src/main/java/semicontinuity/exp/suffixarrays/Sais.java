@@ -173,7 +173,12 @@ public final class Sais {
 
     // find the suffix array SA of T[0..n-1] in {0..k-1}^n
     //   use a working space (excluding T and SA) of at most 2n+O(1) for a constant alphabet
-    private static long saIs(LongArray t, LongArray sa, long fs, long n, long k, boolean isbwt) {
+    static long saIs(LongArray t, LongArray sa, long fs, long n, long k, boolean isbwt) {
+        return saIs(t, sa, null, fs, n, k, isbwt);
+    }
+
+    // if lcp is not null, LCP array is induced in stage 3 too
+    private static long saIs(LongArray t, LongArray sa, LongArray lcp, long fs, long n, long k, boolean isbwt) {
         LongArray bigC;
         LongArray bigB;
         LongArray ra;
@@ -215,7 +220,9 @@ public final class Sais {
         }
         induceSA(t, sa, bigC, bigB, n, k);
 
-        bigB.close();
+        if (bigB != bigC) {
+            bigB.close();
+        }
         bigC.close();
 
         // compact all the sorted substrings into the first m items of SA 2*m must be not larger than n (proveable)
@@ -287,6 +294,10 @@ public final class Sais {
         }
 
         // stage 3: induce the result for the original problem
+        if (lcp != null) {
+            new LcpInducer(t, sa, lcp, n, k).induce(m);
+            return pidx;
+        }
         if (k <= fs) {
             bigC = new LongArrayView(sa, n);
             bigB = (k <= (fs - k)) ? new LongArrayView(sa, n + k) : bigC;
@@ -311,8 +322,10 @@ public final class Sais {
         } else {
             pidx = computeBWT(t, sa, bigC, bigB, n, k);
         }
+        if (bigB != bigC) {
+            bigB.close();
+        }
         bigC.close();
-        bigB.close();
         return pidx;
     }
 
@@ -322,7 +335,18 @@ public final class Sais {
         return saIs(t, sa, 0, n, k, false);
     }
 
-
+    /**
+     * Suffixsorting, that also computes LCP array, as in
+     * {@link SuffixArrays#computeLCP(LongArray, long, long, LongArray, LongArray, java.util.function.Function)},
+     * with {@link LcpInducer}, without another pass over text and suffix array.
+     * Suffix array must hold negative values (e.g. -1) while sorting.
+     */
+    public static void suffixsort(LongArray t, LongArray sa, LongArray lcp, long n, long k) {
+        if (n == 0) {
+            return;
+        }
+        saIs(t, sa, lcp, 0, n, k, false);
+    }
 
 
     // Burrows-Wheeler Transform
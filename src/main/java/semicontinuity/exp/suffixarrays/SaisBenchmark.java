@@ -0,0 +1,89 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Random;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+
+/**
+ * Compares generic {@link Sais} with specialized {@link ByteSais} on random and repetitive byte texts.
+ * Arguments: text length (default 2^24), number of iterations (default 5); the first iteration is a warm-up.
+ * <p>
+ * Generic Sais is first run with several LongArray implementations, so that its call sites are megamorphic,
+ * as they are in a real run, where text, suffix array and views of them are accessed at the same sites.
+ */
+public class SaisBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1 << 24;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        pollute();
+        run("random", random(n, 256, 1), iterations);
+        run("repetitive", random(n, 4, 1000), iterations);
+    }
+
+    private static void run(String name, OffheapByteArray bytes, int iterations) {
+        long n = bytes.length();
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(bytes, 0);
+        OffheapByteArray storage = new OffheapByteArray(n * 5);
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(storage);
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long start = System.nanoTime();
+            Sais.suffixsort(text, sa, n, 256);
+            long generic = System.nanoTime() - start;
+            long checksum = checksum(sa, n);
+
+            start = System.nanoTime();
+            ByteSais.suffixsort(bytes, n, storage, 5);
+            long specialized = System.nanoTime() - start;
+            if (checksum(sa, n) != checksum) {
+                throw new IllegalStateException("Suffix arrays differ");
+            }
+            System.out.printf("%s n=%d: generic %d ms, specialized %d ms, speedup %.2f%n",
+                    name, n, generic / 1000000, specialized / 1000000, (double) generic / specialized);
+        }
+        sa.close();
+        text.close();
+    }
+
+    // runs generic Sais with other LongArray implementations
+    private static void pollute() {
+        int n = 1 << 16;
+        OffheapByteArray bytes = random(n, 256, 1);
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(bytes, 0);
+        LongArray copy = new OffheapByteArrayAsLongArrayLsb(n);
+        for (int i = 0; i < n; i++) {
+            copy.set(i, text.get(i));
+        }
+        LongArray sa = new OffheapByteArrayAsLongArrayLsb(n);
+        for (int i = 0; i < 3; i++) {
+            Sais.suffixsort(copy, sa, n, 256);
+            Sais.suffixsort(text, sa, n, 256);
+        }
+        sa.close();
+        copy.close();
+        text.close();
+    }
+
+    private static long checksum(LongArray sa, long n) {
+        long sum = 0;
+        for (long i = 0; i < n; i++) {
+            sum = sum * 31 + sa.get(i);
+        }
+        return sum;
+    }
+
+    private static OffheapByteArray random(int n, int alphabetSize, int repeatLength) {
+        Random random = new Random(n);
+        OffheapByteArray bytes = new OffheapByteArray(n);
+        for (int i = 0; i < n; i++) {
+            bytes.set(i, repeatLength > 1 && i >= repeatLength && random.nextInt(50) != 0
+                    ? bytes.get(i - repeatLength)
+                    : (byte) random.nextInt(alphabetSize));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,46 @@
+package semicontinuity.exp.suffixarrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class SaisTest {
+
+    @Test
+    public void inducedLcpSameAsKasai() {
+        check(SuffixArraysTest.random(10000, 256, 1));
+        check(SuffixArraysTest.random(10000, 2, 1));
+        check(SuffixArraysTest.random(10000, 4, 300));
+        check(SuffixArraysTest.random(10000, 1, 1));
+        for (int n = 1; n < 40; n++) {
+            for (int alphabetSize = 1; alphabetSize <= 3; alphabetSize++) {
+                check(SuffixArraysTest.random(n, alphabetSize, 2));
+                check(SuffixArraysTest.random(n, alphabetSize, 5));
+            }
+        }
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text) {
+        long n = text.length();
+        LongArray expectedSa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, expectedSa, n, 256);
+        LongArray expectedLcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, expectedSa, expectedLcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, lcp, n, 256);
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(expectedSa.get(i), sa.get(i));
+            Assert.assertEquals(expectedLcp.get(i), lcp.get(i));
+        }
+        expectedSa.close();
+        expectedLcp.close();
+        sa.close();
+        lcp.close();
+        text.close();
+    }
+}
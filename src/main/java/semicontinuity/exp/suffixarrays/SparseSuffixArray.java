@@ -0,0 +1,289 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.File;
+
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+import semicontinuity.exp.offheap.OffheapByteArrayAsLongArrayLsb;
+
+/**
+ * Sparse suffix array: sorted suffixes, that start at selected text positions only, and their LCP array;
+ * memory and time depend on the number of selected suffixes m, rather than on text length n
+ * (except for reading the text, that may be memory-mapped).
+ * <p>
+ * For every k-th position (k &lt;= 15), the text is read as a string of m = ceil(n / k) k-grams:
+ * k-grams are sorted and named with their ranks, and suffix array of the string of names (computed with {@link Sais})
+ * orders the sampled suffixes, as all k-grams have the same length (the last one is shorter, and unique).
+ * Then LCP of the names (Kasai's algorithm) counts equal k-grams, and the next ones are compared by symbols.
+ * Extra memory: 24 bytes per k-gram for sorting on heap (or, if they do not fit in the given budget,
+ * external sorting in scratch files), and 10 bytes for names and LCP.
+ * <p>
+ * Arbitrary positions (e.g. token or record boundaries) are merge-sorted, and suffixes are compared with
+ * Karp-Rabin fingerprints ({@link PrefixFingerprints}): a comparison is O(sampleRate * log n), regardless of the
+ * length of the common prefix, so repetitive text (e.g. repeated records) does not make sorting quadratic.
+ * With fingerprints sampled at every (n / m)-th position, sorting takes 16m bytes, and O(n log m log n) time;
+ * with fingerprints, stored for the text at a small sample rate s, it takes O(s m log m log n) time.
+ * LCP of adjacent suffixes is found in the same way.
+ */
+public final class SparseSuffixArray {
+    private static final int MAX_GRAM = 15;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final int DIRECT_COMPARE = 32;
+
+    private SparseSuffixArray() {
+    }
+
+    /**
+     * @return number of sampled suffixes of text of length n, for the given sampling rate
+     */
+    public static long sampleCount(long n, int rate) {
+        return (n + rate - 1) / rate;
+    }
+
+    /**
+     * Sorts suffixes, that start at every rate-th position of text[0..n-1], with half of the maximal heap size
+     * for sorting k-grams, and scratch files in the temporary directory, if it is not enough.
+     * @param text text symbols, in the range [0-255]
+     * @param sa   sampled suffix array (positions in text) of {@link #sampleCount(long, int)} items
+     * @param lcp  LCP array of the same length, lcp[0] = -1
+     */
+    public static void sample(LongArray text, long n, int rate, LongArray sa, LongArray lcp) {
+        sample(text, n, rate, sa, lcp, Runtime.getRuntime().maxMemory() / 2,
+                new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * Sorts suffixes, that start at every rate-th position of text[0..n-1].
+     * @param text       text symbols, in the range [0-255]
+     * @param sa         sampled suffix array (positions in text) of {@link #sampleCount(long, int)} items
+     * @param lcp        LCP array of the same length, lcp[0] = -1
+     * @param ramBytes   heap memory for sorting k-grams (24 bytes per k-gram are sorted in memory, if they fit)
+     * @param scratchDir directory for scratch files of external sorting, if k-grams do not fit in ramBytes
+     */
+    public static void sample(
+            LongArray text, long n, int rate, LongArray sa, LongArray lcp, long ramBytes, File scratchDir) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException(String.valueOf(rate));
+        }
+        long m = sampleCount(n, rate);
+        if (m == 0) {
+            return;
+        }
+        if (rate > MAX_GRAM) {
+            for (long j = 0; j < m; j++) {
+                sa.set(j, j * rate);
+            }
+            sort(text, n, sa, m, lcp);
+            return;
+        }
+
+        try (LongArray names = new OffheapByteArrayAsFiveByteLongArrayLsb(m)) {
+            long alphabetSize = m <= Math.min(ramBytes / ExternalSorter.RECORD_BYTES, (Integer.MAX_VALUE - 8) / 3)
+                    ? nameInMemory(text, n, rate, m, names)
+                    : nameExternally(text, n, rate, m, names, ExternalSorter.of(scratchDir, ramBytes));
+            Sais.suffixsort(names, sa, m, alphabetSize);
+            SuffixArrays.computeLCP(names, 0, m, sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        }
+        for (long r = 0; r < m; r++) {
+            long position = sa.get(r) * rate;
+            sa.set(r, position);
+            if (r > 0) {
+                // equal k-grams, then symbols of the first different ones
+                long h = lcp.get(r) * rate;
+                long previous = sa.get(r - 1);
+                long end = Math.min(h + rate, n - Math.max(previous, position));
+                while (h < end && text.get(previous + h) == text.get(position + h)) {
+                    h++;
+                }
+                lcp.set(r, h);
+            }
+        }
+    }
+
+    // names k-grams with their ranks, sorted as records (k1, k2, index) in memory; returns the number of names
+    private static long nameInMemory(LongArray text, long n, int rate, long m, LongArray names) {
+        long[] records = new long[(int) m * 3];
+        long[] gram = new long[2];
+        for (int j = 0; j < m; j++) {
+            gram(text, n, rate, j, gram);
+            records[j * 3] = gram[0];
+            records[j * 3 + 1] = gram[1];
+            records[j * 3 + 2] = j;
+        }
+        ExternalSorter.sort(records, 0, (int) m);
+
+        long name = -1;
+        for (int r = 0; r < m; r++) {
+            if (r == 0 || records[r * 3] != records[r * 3 - 3] || records[r * 3 + 1] != records[r * 3 - 2]) {
+                name++;
+            }
+            names.set(records[r * 3 + 2], name);
+        }
+        return name + 1;
+    }
+
+    // names k-grams with their ranks, sorted as records (k1, k2, index) in scratch files; returns the number of names
+    private static long nameExternally(
+            LongArray text, long n, int rate, long m, LongArray names, ExternalSorter sorter) {
+        long[] gram = new long[2];
+        for (long j = 0; j < m; j++) {
+            gram(text, n, rate, j, gram);
+            sorter.add(gram[0], gram[1], j);
+        }
+        File sorted = sorter.scratchFile();
+        sorter.sortTo(sorted);
+
+        long name = -1;
+        try (ExternalSorter.Reader reader = new ExternalSorter.Reader(sorted)) {
+            long k1 = 0;
+            long k2 = 0;
+            while (reader.next()) {
+                if (name < 0 || reader.k1 != k1 || reader.k2 != k2) {
+                    name++;
+                    k1 = reader.k1;
+                    k2 = reader.k2;
+                }
+                names.set(reader.v, name);
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            sorted.delete();
+        }
+        return name + 1;
+    }
+
+    // j-th k-gram in gram[0] and gram[1] (big-endian), with its length in the lowest byte
+    private static void gram(LongArray text, long n, int rate, long j, long[] gram) {
+        long position = j * rate;
+        int length = (int) Math.min(rate, n - position);
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = 0; i < 15; i++) {
+            long symbol = i < length ? text.get(position + i) : 0;
+            if (i < 8) {
+                k1 = k1 << 8 | symbol;
+            } else {
+                k2 = k2 << 8 | symbol;
+            }
+        }
+        gram[0] = k1;
+        gram[1] = k2 << 8 | length;
+    }
+
+    /**
+     * Sorts suffixes, that start at the given positions of text[0..n-1], with fingerprints of text prefixes
+     * sampled at every (n / m)-th position (so that they take 8m bytes).
+     * @param text text symbols, in the range [0-255]
+     * @param sa   positions (distinct) in sa[0..m-1], sorted in place by their suffixes
+     * @param lcp  LCP array of m items, lcp[0] = -1
+     */
+    public static void sort(LongArray text, long n, LongArray sa, long m, LongArray lcp) {
+        int rate = (int) Math.max(1, Math.min(Integer.MAX_VALUE, n / Math.max(1, m)));
+        LongArray storage = new OffheapByteArrayAsLongArrayLsb(PrefixFingerprints.storageLength(text.length(), rate));
+        try (PrefixFingerprints fingerprints = PrefixFingerprints.build(text, storage, rate, n)) {
+            sort(text, n, sa, m, lcp, fingerprints);
+        }
+    }
+
+    /**
+     * Sorts suffixes, that start at the given positions of text[0..n-1], with the given fingerprints of text prefixes
+     * (e.g. stored next to the text, with a small sample rate).
+     * Suffixes are compared by symbols, up to {@value #DIRECT_COMPARE} of them, then with
+     * {@link PrefixFingerprints#lce(long, long)}, so the result is correct with high probability.
+     * @param sa  positions (distinct) in sa[0..m-1], sorted in place by their suffixes
+     * @param lcp LCP array of m items, lcp[0] = -1
+     */
+    public static void sort(
+            LongArray text, long n, LongArray sa, long m, LongArray lcp, PrefixFingerprints fingerprints) {
+        new MergeSort(text, n, fingerprints).sort(sa, m);
+        for (long r = 0; r < m; r++) {
+            lcp.set(r, r == 0 ? -1 : lce(text, n, fingerprints, sa.get(r - 1), sa.get(r)));
+        }
+    }
+
+
+    // length of the longest common prefix of suffixes p != q
+    private static long lce(LongArray text, long n, PrefixFingerprints fingerprints, long p, long q) {
+        long max = n - Math.max(p, q);
+        long end = Math.min(max, DIRECT_COMPARE);
+        long h = 0;
+        while (h < end && text.get(p + h) == text.get(q + h)) {
+            h++;
+        }
+        return h < DIRECT_COMPARE ? h : Math.min(max, h + fingerprints.lce(p + h, q + h));
+    }
+
+
+    private static class MergeSort {
+        private final LongArray text;
+        private final long n;
+        private final PrefixFingerprints fingerprints;
+
+        MergeSort(LongArray text, long n, PrefixFingerprints fingerprints) {
+            this.text = text;
+            this.n = n;
+            this.fingerprints = fingerprints;
+        }
+
+        void sort(LongArray sa, long m) {
+            for (long from = 0; from < m; from += INSERTION_SORT_THRESHOLD) {
+                insertionSort(sa, from, Math.min(m, from + INSERTION_SORT_THRESHOLD));
+            }
+            if (m <= INSERTION_SORT_THRESHOLD) {
+                return;
+            }
+            try (LongArray buffer = new OffheapByteArrayAsFiveByteLongArrayLsb(m)) {
+                LongArray source = sa;
+                LongArray target = buffer;
+                for (long width = INSERTION_SORT_THRESHOLD; width < m; width <<= 1) {
+                    for (long from = 0; from < m; from += 2 * width) {
+                        merge(source, target, from, Math.min(m, from + width), Math.min(m, from + 2 * width));
+                    }
+                    LongArray swap = source;
+                    source = target;
+                    target = swap;
+                }
+                if (source != sa) {
+                    for (long i = 0; i < m; i++) {
+                        sa.set(i, source.get(i));
+                    }
+                }
+            }
+        }
+
+        // merges source[from, middle) and source[middle, to) into target[from, to)
+        private void merge(LongArray source, LongArray target, long from, long middle, long to) {
+            long i = from;
+            long j = middle;
+            for (long k = from; k < to; k++) {
+                if (j == to || i < middle && compare(source.get(i), source.get(j)) < 0) {
+                    target.set(k, source.get(i++));
+                } else {
+                    target.set(k, source.get(j++));
+                }
+            }
+        }
+
+        private void insertionSort(LongArray sa, long from, long to) {
+            for (long i = from + 1; i < to; i++) {
+                long position = sa.get(i);
+                long j = i;
+                while (j > from && compare(sa.get(j - 1), position) > 0) {
+                    sa.set(j, sa.get(j - 1));
+                    j--;
+                }
+                sa.set(j, position);
+            }
+        }
+
+        private int compare(long p, long q) {
+            long h = lce(text, n, fingerprints, p, q);
+            return Long.compare(symbol(p + h), symbol(q + h));
+        }
+
+        // -1 after the end of text
+        private long symbol(long position) {
+            return position < n ? text.get(position) : -1;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.function.LongPredicate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class SparseSuffixArrayTest {
+
+    @Test
+    public void sample() {
+        for (int rate : new int[] {1, 2, 3, 7, 8, 15, 16, 20}) {
+            for (int n = 1; n < 200; n += 13) {
+                checkSample(SuffixArraysTest.random(n, 3, 4), rate);
+            }
+            checkSample(SuffixArraysTest.random(5000, 256, 1), rate);
+            checkSample(SuffixArraysTest.random(5000, 2, 60), rate);
+        }
+    }
+
+    @Test
+    public void sampleExternally() throws IOException {
+        File dir = Files.createTempDirectory("sparse").toFile();
+        for (int rate : new int[] {1, 3, 8, 15}) {
+            // runs of 31 k-grams, merged by two
+            checkSample(SuffixArraysTest.random(5000, 4, 1), rate, 1000, dir);
+            checkSample(SuffixArraysTest.random(5000, 2, 60), rate, 1000, dir);
+        }
+        Assert.assertEquals(0, dir.list().length);
+        Assert.assertTrue(dir.delete());
+    }
+
+    @Test
+    public void positions() {
+        for (int n = 1; n < 200; n += 13) {
+            checkPositions(SuffixArraysTest.random(n, 3, 4), 3);
+        }
+        checkPositions(SuffixArraysTest.random(5000, 4, 1), 5);
+        checkPositions(SuffixArraysTest.random(5000, 2, 100), 2);
+        checkPositions(SuffixArraysTest.random(5000, 256, 1), 50);
+    }
+
+    @Test
+    public void repeatedRecords() {
+        // 2000 records of the same line, with a different one in the middle
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(2000 * 100);
+        for (int p = 0; p < text.length(); p++) {
+            text.set(p, p % 100 == 99 ? '\n' : 'a' + p % 7);
+        }
+        text.set(1000 * 100 + 5, 'z');
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(2000);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(2000);
+        for (int j = 0; j < 2000; j++) {
+            sa.set(j, j * 100);
+        }
+        SparseSuffixArray.sort(text, text.length(), sa, 2000, lcp);
+        check(text, sa, lcp, p -> p % 100 == 0);
+
+        checkSample(text, 50);
+        checkSample(text, 10);
+    }
+
+    private static void checkSample(ByteArrayAsLongArrayAdapter text, int rate) {
+        long n = text.length();
+        long m = SparseSuffixArray.sampleCount(n, rate);
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(m);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(m);
+        SparseSuffixArray.sample(text, n, rate, sa, lcp);
+        check(text, sa, lcp, p -> p % rate == 0);
+    }
+
+    private static void checkSample(ByteArrayAsLongArrayAdapter text, int rate, long ramBytes, File dir) {
+        long n = text.length();
+        long m = SparseSuffixArray.sampleCount(n, rate);
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(m);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(m);
+        SparseSuffixArray.sample(text, n, rate, sa, lcp, ramBytes, dir);
+        check(text, sa, lcp, p -> p % rate == 0);
+    }
+
+    private static void checkPositions(ByteArrayAsLongArrayAdapter text, int bound) {
+        long n = text.length();
+        Random random = new Random(n);
+        boolean[] selected = new boolean[(int) n];
+        long m = 0;
+        for (int p = 0; p < n; p++) {
+            selected[p] = random.nextInt(bound) == 0;
+            if (selected[p]) {
+                m++;
+            }
+        }
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(m);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(m);
+        // in reverse order
+        long j = 0;
+        for (int p = (int) n - 1; p >= 0; p--) {
+            if (selected[p]) {
+                sa.set(j++, p);
+            }
+        }
+        SparseSuffixArray.sort(text, n, sa, m, lcp);
+        check(text, sa, lcp, p -> selected[(int) p]);
+    }
+
+    // compares with the full suffix array and LCP array, filtered to the selected positions
+    private static void check(LongArray text, LongArray sa, LongArray lcp, LongPredicate selected) {
+        long n = text.length();
+        LongArray full = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, full, n, 256);
+        LongArray fullLcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, full, fullLcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        long r = 0;
+        long min = Long.MAX_VALUE;
+        for (long i = 0; i < n; i++) {
+            long position = full.get(i);
+            min = Math.min(min, fullLcp.get(i));
+            if (!selected.test(position)) {
+                continue;
+            }
+            Assert.assertEquals(position, sa.get(r));
+            Assert.assertEquals(r == 0 ? -1 : min, lcp.get(r));
+            min = Long.MAX_VALUE;
+            r++;
+        }
+        Assert.assertEquals(sa.length(), r);
+    }
+}
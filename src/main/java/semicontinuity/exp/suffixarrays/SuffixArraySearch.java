@@ -0,0 +1,144 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import semicontinuity.exp.offheap.LongArray;
+
+/**
+ * Substring queries (count, locate) over text and its suffix array, e.g. memory-mapped files 'data' and 'sa'.
+ * <p>
+ * Suffixes, that start with a pattern, form a range of suffix array, found with two binary searches.
+ * They use the mlr heuristic of Manber and Myers: l and r are the lengths of common prefixes of the pattern
+ * with suffixes at the borders of the search range, so all suffixes in the range share min(l, r) symbols
+ * with the pattern, and comparison starts after them. For patterns of length m, a search takes
+ * O(m + log n) symbol comparisons in practice (O(m log n) in the worst case).
+ * <p>
+ * Does not modify state, so it is thread-safe, if reads of text and suffix array are
+ * (i.e. they are in memory or memory-mapped, not paged through a buffer pool).
+ */
+public class SuffixArraySearch {
+    private final LongArray text;
+    private final LongArray sa;
+    private final long n;
+
+    /**
+     * @param text text symbols, in the range [0-255]
+     */
+    @SuppressWarnings("WeakerAccess")
+    public SuffixArraySearch(LongArray text, LongArray sa) {
+        this.text = text;
+        this.sa = sa;
+        this.n = sa.length();
+    }
+
+    /**
+     * @return range [from, to) of suffix array with suffixes, that start with the pattern (from == to if none)
+     */
+    public long[] range(byte[] pattern) {
+        long from = lowerBound(pattern, -1);
+        return new long[] {from, upperBound(pattern, from - 1)};
+    }
+
+    /**
+     * @return number of occurrences of the pattern in text
+     */
+    public long count(byte[] pattern) {
+        long[] range = range(pattern);
+        return range[1] - range[0];
+    }
+
+    /**
+     * @return text positions of at most limit occurrences of the pattern, in the order of suffix array
+     */
+    public long[] locate(byte[] pattern, int limit) {
+        return locate(range(pattern), limit);
+    }
+
+    /**
+     * @return text positions of at most limit suffixes in the range, e.g. found with {@link #ranges(byte[][])}
+     */
+    public long[] locate(long[] range, int limit) {
+        long[] positions = new long[(int) Math.min(limit, range[1] - range[0])];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = sa.get(range[0] + i);
+        }
+        return positions;
+    }
+
+    /**
+     * Finds ranges for many patterns; they are searched in sorted order, so that consecutive searches
+     * touch the same pages, and every lower bound is searched to the right of the previous one.
+     * @return ranges, as in {@link #range(byte[])}, in the order of patterns
+     */
+    public long[][] ranges(byte[][] patterns) {
+        Integer[] order = IntStream.range(0, patterns.length).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (a, b) -> compare(patterns[a], patterns[b]));
+        long[][] ranges = new long[patterns.length][];
+        long previous = -1;
+        for (int i : order) {
+            long from = lowerBound(patterns[i], previous);
+            ranges[i] = new long[] {from, upperBound(patterns[i], from - 1)};
+            previous = from - 1;
+        }
+        return ranges;
+    }
+
+    /**
+     * @return counts, as in {@link #count(byte[])}, in the order of patterns
+     */
+    public long[] counts(byte[][] patterns) {
+        return Arrays.stream(ranges(patterns)).mapToLong(range -> range[1] - range[0]).toArray();
+    }
+
+
+    // the first suffix after left, that is not smaller than the pattern (or starts with it)
+    private long lowerBound(byte[] pattern, long left) {
+        return search(pattern, left, false);
+    }
+
+    // the first suffix after left, that is greater than the pattern and does not start with it
+    private long upperBound(byte[] pattern, long left) {
+        return search(pattern, left, true);
+    }
+
+    // binary search in (left, n), with suffixes at left and n being virtual borders
+    private long search(byte[] pattern, long left, boolean matchIsSmaller) {
+        long right = n;
+        long l = 0;
+        long r = 0;
+        while (right - left > 1) {
+            long middle = (left + right) >>> 1;
+            long position = sa.get(middle);
+            int h = (int) Math.min(l, r);
+            while (h < pattern.length && position + h < n && text.get(position + h) == (pattern[h] & 0xFF)) {
+                h++;
+            }
+            boolean smaller;
+            if (h == pattern.length) {
+                smaller = matchIsSmaller;
+            } else {
+                // a suffix, that is a proper prefix of the pattern, is smaller
+                smaller = position + h == n || text.get(position + h) < (pattern[h] & 0xFF);
+            }
+            if (smaller) {
+                left = middle;
+                l = h;
+            } else {
+                right = middle;
+                r = h;
+            }
+        }
+        return right;
+    }
+
+    // lexicographic order of unsigned bytes
+    private static int compare(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+}
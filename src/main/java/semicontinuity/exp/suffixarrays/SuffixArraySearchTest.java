@@ -0,0 +1,80 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class SuffixArraySearchTest {
+
+    @Test
+    public void sameAsScan() {
+        for (int n = 1; n < 300; n += 13) {
+            check(SuffixArraysTest.random(n, 3, 4));
+        }
+        check(SuffixArraysTest.random(5000, 2, 1));
+        check(SuffixArraysTest.random(5000, 256, 1));
+        check(SuffixArraysTest.random(5000, 4, 300));
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text) {
+        int n = (int) text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        SuffixArraySearch search = new SuffixArraySearch(text, sa);
+
+        // substrings of text, and random strings
+        Random random = new Random(n);
+        byte[][] patterns = new byte[100][];
+        for (int q = 0; q < patterns.length; q++) {
+            int start = random.nextInt(n);
+            patterns[q] = new byte[1 + random.nextInt(Math.min(n - start, 30))];
+            for (int i = 0; i < patterns[q].length; i++) {
+                patterns[q][i] = (byte) (q % 2 == 0 ? text.get(start + i) : random.nextInt(4));
+            }
+        }
+
+        long[][] ranges = search.ranges(patterns);
+        for (int q = 0; q < patterns.length; q++) {
+            long from = -1;
+            long to = -1;
+            for (int i = 0; i < n; i++) {
+                if (startsWith(text, sa.get(i), patterns[q])) {
+                    from = from == -1 ? i : from;
+                    to = i + 1;
+                }
+            }
+            long[] range = search.range(patterns[q]);
+            Assert.assertArrayEquals(range, ranges[q]);
+            if (from == -1) {
+                Assert.assertEquals(0, search.count(patterns[q]));
+                Assert.assertEquals(range[0], range[1]);
+            } else {
+                Assert.assertArrayEquals(new long[] {from, to}, range);
+                long[] positions = search.locate(patterns[q], 3);
+                Assert.assertEquals(Math.min(3, to - from), positions.length);
+                for (long position : positions) {
+                    Assert.assertTrue(startsWith(text, position, patterns[q]));
+                }
+                Assert.assertArrayEquals(positions, search.locate(ranges[q], 3));
+            }
+        }
+        Assert.assertArrayEquals(Arrays.stream(ranges).mapToLong(r -> r[1] - r[0]).toArray(), search.counts(patterns));
+        sa.close();
+        text.close();
+    }
+
+    private static boolean startsWith(LongArray text, long position, byte[] pattern) {
+        for (int i = 0; i < pattern.length; i++) {
+            if (position + i >= text.length() || text.get(position + i) != (pattern[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,6 +2,7 @@ package semicontinuity.exp.suffixarrays;
 
 import java.util.function.Function;
 
+import semicontinuity.exp.offheap.BatchedAccess;
 import semicontinuity.exp.offheap.LongArray;
 
 /**
@@ -9,6 +10,8 @@ import semicontinuity.exp.offheap.LongArray;
  * https://github.com/carrotsearch/jsuffixarrays
  */
 public class SuffixArrays {
+    private static final int BATCH_SIZE = BatchedAccess.DEFAULT_BATCH_SIZE;
+
     /**
      * Calculate longest prefix (LCP) array for an existing suffix array and input. Index
      * <code>i</code> of the returned array indicates the length of the common prefix
@@ -25,9 +28,7 @@ public class SuffixArrays {
             Function<Long, LongArray> arrayFactory)
     {
         try (LongArray rank = arrayFactory.apply(length)) {
-            for (long i = 0; i < length; i++) {
-                rank.set(sa.get(i), i);
-            }
+            new BatchedAccess(batchSize(0, length)).invert(sa, rank, length);
             int h = 0;
             for (long i = 0; i < length; i++) {
                 long k = rank.get(i);
@@ -47,4 +48,96 @@ public class SuffixArrays {
             return lcp;
         }
     }
+
+    /**
+     * Calculates the same LCP array as {@link #computeLCP(LongArray, long, long, LongArray, LongArray, Function)},
+     * with the permuted LCP (PLCP) algorithm, that needs less random access:
+     * <tt>J. Kärkkäinen, G. Manzini, S. J. Puglisi. Permuted longest-common-prefix array.
+     * In Proc. 20th Symposium on Combinatorial Pattern Matching (CPM ’09), pages 181–192.
+     * Springer-Verlag LNCS n. 5577, 2009.</tt>
+     * <p>
+     * Φ array (phi[sa[k]] = sa[k - 1]) is computed from sequential scan of the suffix array, with sorted batches of writes.
+     * Then PLCP (LCP values in text order) is computed in place of Φ, reading the text at i + h sequentially
+     * (and at phi[i] + h), and finally permuted to suffix array order, with sorted batches of reads.
+     * No rank array is needed; with Φ array in a file (from arrayFactory), only the text has to be in memory.
+     */
+    public static LongArray computeLcpPhi(
+            LongArray input, long start, long length, LongArray sa, LongArray lcp,
+            Function<Long, LongArray> arrayFactory)
+    {
+        try (LongArray plcp = arrayFactory.apply(length)) {
+            BatchedAccess batchedAccess = new BatchedAccess(batchSize(0, length));
+            computePhi(sa, plcp, length, batchedAccess);
+            computePlcp(input, start, length, plcp, 0, length);
+            permute(sa, plcp, lcp, length, batchedAccess);
+            return lcp;
+        }
+    }
+
+    // phi[sa[k]] = sa[k - 1], phi[sa[0]] = -1
+    static void computePhi(LongArray sa, LongArray phi, long length, BatchedAccess batchedAccess) {
+        computePhi(sa, phi, 0, length, batchedAccess);
+    }
+
+    static void computePhi(LongArray sa, LongArray phi, long from, long to, BatchedAccess batchedAccess) {
+        int batchSize = batchSize(from, to);
+        long[] idx = new long[batchSize];
+        long[] values = new long[batchSize];
+        for (long k = from; k < to; k += batchSize) {
+            int count = (int) Math.min(batchSize, to - k);
+            for (int b = 0; b < count; b++) {
+                idx[b] = sa.get(k + b);
+                values[b] = k + b == 0 ? -1 : sa.get(k + b - 1);
+            }
+            batchedAccess.scatter(phi, idx, values, count);
+        }
+    }
+
+    /**
+     * Replaces phi[i] with plcp[i] for i in [from, to); the LCP of the suffix at sa[0] is -1.
+     * Only uses plcp[i] &gt;= plcp[i - 1] - 1 inside the range, so ranges can be processed independently.
+     */
+    static void computePlcp(LongArray input, long start, long length, LongArray phi, long from, long to) {
+        long h = 0;
+        for (long i = from; i < to; i++) {
+            long j = phi.get(i);
+            if (j < 0) {
+                phi.set(i, -1);
+                h = 0;
+                continue;
+            }
+            while (i + h < length && j + h < length && input.get(start + i + h) == input.get(start + j + h)) {
+                h++;
+            }
+            phi.set(i, h);
+            if (h > 0) {
+                h--;
+            }
+        }
+    }
+
+    // lcp[k] = plcp[sa[k]]
+    static void permute(LongArray sa, LongArray plcp, LongArray lcp, long length, BatchedAccess batchedAccess) {
+        permute(sa, plcp, lcp, 0, length, batchedAccess);
+    }
+
+    static void permute(LongArray sa, LongArray plcp, LongArray lcp, long from, long to, BatchedAccess batchedAccess) {
+        int batchSize = batchSize(from, to);
+        long[] idx = new long[batchSize];
+        long[] values = new long[batchSize];
+        for (long k = from; k < to; k += batchSize) {
+            int count = (int) Math.min(batchSize, to - k);
+            for (int b = 0; b < count; b++) {
+                idx[b] = sa.get(k + b);
+            }
+            batchedAccess.gather(plcp, idx, values, count);
+            for (int b = 0; b < count; b++) {
+                lcp.set(k + b, values[b]);
+            }
+        }
+    }
+
+    static int batchSize(long from, long to) {
+        return (int) Math.max(1, Math.min(BATCH_SIZE, to - from));
+    }
 }
@@ -0,0 +1,52 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class SuffixArraysTest {
+
+    @Test
+    public void lcpPhiSameAsKasai() {
+        check(random(10000, 256, 1));
+        check(random(10000, 2, 1));
+        check(random(10000, 4, 300));
+        for (int n = 1; n < 20; n++) {
+            check(random(n, 3, 2));
+        }
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text) {
+        long n = text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        LongArray expected = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, sa, expected, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        LongArray actual = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLcpPhi(text, 0, n, sa, actual, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        for (long i = 0; i < n; i++) {
+            Assert.assertEquals(expected.get(i), actual.get(i));
+        }
+        expected.close();
+        actual.close();
+        sa.close();
+        text.close();
+    }
+
+    // random text, with repeats of given length, if it is greater than 1
+    static ByteArrayAsLongArrayAdapter random(int n, int alphabetSize, int repeatLength) {
+        Random random = new Random(n + alphabetSize);
+        ByteArrayAsLongArrayAdapter text = new ByteArrayAsLongArrayAdapter(n);
+        for (int i = 0; i < n; i++) {
+            text.set(i, i >= repeatLength && random.nextInt(50) != 0
+                    ? text.get(i - repeatLength)
+                    : random.nextInt(alphabetSize));
+        }
+        return text;
+    }
+}
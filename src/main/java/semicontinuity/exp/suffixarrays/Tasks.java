@@ -0,0 +1,43 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs tasks on a pool and waits for them; exceptions of tasks are rethrown unchecked.
+ */
+final class Tasks {
+    private Tasks() {
+    }
+
+    /**
+     * Runs body for every task number in [0, tasks), and waits for all of them.
+     */
+    static void parallel(ForkJoinPool pool, int tasks, IntConsumer body) {
+        List<Callable<Object>> callables = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            int task = i;
+            callables.add(Executors.callable(() -> body.accept(task)));
+        }
+        for (Future<Object> future : pool.invokeAll(callables)) {
+            join(future);
+        }
+    }
+
+    static void join(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
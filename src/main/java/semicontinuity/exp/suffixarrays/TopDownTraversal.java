@@ -0,0 +1,164 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import semicontinuity.exp.offheap.LongArray;
+
+/**
+ * Top-down traversal of lcp-intervals of enhanced suffix array (suffix array, LCP array and {@link ChildTable}),
+ * as described in <tt>M. I. Abouelhoda, S. Kurtz, E. Ohlebusch. Replacing suffix trees with enhanced suffix arrays.</tt>
+ * <p>
+ * The l-indices of interval l-[i..j] (positions with lcp = l, that split it into child intervals) are found
+ * with child table: the first one is up[j + 1] if lcp[i] &lt;= lcp[j + 1], and down[i] otherwise,
+ * and the others follow with nextLIndex. So child intervals are enumerated in O(alphabet size),
+ * and a pattern of length m is found in O(m * alphabet size).
+ */
+public class TopDownTraversal {
+    private final LongArray text;
+    private final LongArray sa;
+    private final LongArray lcp;
+    private final LongArray cld;
+    private final long n;
+
+    @SuppressWarnings("WeakerAccess")
+    public TopDownTraversal(LongArray text, LongArray sa, LongArray lcp, LongArray cld) {
+        this.text = text;
+        this.sa = sa;
+        this.lcp = lcp;
+        this.cld = cld;
+        this.n = sa.length();
+    }
+
+    /**
+     * @return interval of all suffixes (n must be positive)
+     */
+    public LcpInterval root() {
+        return interval(0, n - 1);
+    }
+
+    /**
+     * @return lcp-interval or leaf sa[from..to] (must be an interval, e.g. child of another one)
+     */
+    public LcpInterval interval(long from, long to) {
+        return from == to
+                ? new LcpInterval(n - sa.get(from), from, to)
+                : new LcpInterval(lcp.get(firstLIndex(from, to)), from, to);
+    }
+
+    /**
+     * Reports child intervals (including leaves) in order.
+     */
+    public void children(LcpInterval interval, Consumer<LcpInterval> consumer) {
+        if (interval.isLeaf()) {
+            return;
+        }
+        long from = interval.from;
+        for (long k = firstLIndex(interval.from, interval.to); k != -1; k = nextLIndex(k, interval)) {
+            consumer.accept(interval(from, k - 1));
+            from = k;
+        }
+        consumer.accept(interval(from, interval.to));
+    }
+
+    /**
+     * @return child interval, whose suffixes have the given symbol after the common prefix, or null
+     */
+    public LcpInterval child(LcpInterval interval, long symbol) {
+        if (interval.isLeaf()) {
+            return null;
+        }
+        long from = interval.from;
+        for (long k = firstLIndex(interval.from, interval.to); ; k = nextLIndex(k, interval)) {
+            long to = k == -1 ? interval.to : k - 1;
+            long s = symbol(from, interval.value);
+            if (s == symbol) {
+                return interval(from, to);
+            }
+            if (s > symbol || k == -1) {
+                return null;
+            }
+            from = k;
+        }
+    }
+
+    /**
+     * @return the smallest interval of suffixes that start with pattern[0..length-1], or null
+     */
+    public LcpInterval find(LongArray pattern, long length) {
+        LcpInterval interval = root();
+        long depth = 0;
+        while (true) {
+            long position = sa.get(interval.from);
+            for (long i = depth, end = Math.min(interval.value, length); i < end; i++) {
+                if (text.get(position + i) != pattern.get(i)) {
+                    return null;
+                }
+            }
+            if (length <= interval.value) {
+                return interval;
+            }
+            depth = interval.value;
+            interval = child(interval, pattern.get(depth));
+            if (interval == null) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Visits lcp-intervals (not leaves) in pre-order;
+     * child intervals are visited only if visitor returns true for the parent, e.g. while its lcp is below a limit.
+     */
+    public void visit(Predicate<LcpInterval> visitor) {
+        ArrayDeque<LcpInterval> stack = new ArrayDeque<>();
+        List<LcpInterval> children = new ArrayList<>();
+        LcpInterval root = root();
+        if (!root.isLeaf()) {
+            stack.push(root);
+        }
+        while (!stack.isEmpty()) {
+            LcpInterval interval = stack.pop();
+            if (visitor.test(interval)) {
+                children.clear();
+                children(interval, child -> {
+                    if (!child.isLeaf()) {
+                        children.add(child);
+                    }
+                });
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+        }
+    }
+
+    private long firstLIndex(long from, long to) {
+        return lcpAt(from) <= lcpAt(to + 1) ? cld.get(to) : cld.get(from);
+    }
+
+    // the next l-index after the l-index k, or -1
+    private long nextLIndex(long k, LcpInterval interval) {
+        if (k < interval.to) {
+            long next = cld.get(k);
+            // otherwise, it is down[k]
+            if (next > k && next <= interval.to && lcp.get(next) == interval.value) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    private long lcpAt(long i) {
+        return i <= 0 || i >= n ? -1 : lcp.get(i);
+    }
+
+    // symbol at the given depth of suffix sa[i], -1 at the end of text
+    private long symbol(long i, long depth) {
+        long position = sa.get(i) + depth;
+        return position < n ? text.get(position) : -1;
+    }
+}
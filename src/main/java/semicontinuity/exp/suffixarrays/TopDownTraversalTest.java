@@ -0,0 +1,107 @@
+package semicontinuity.exp.suffixarrays;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import semicontinuity.exp.offheap.ByteArrayAsLongArrayAdapter;
+import semicontinuity.exp.offheap.LongArray;
+import semicontinuity.exp.offheap.OffheapByteArrayAsFiveByteLongArrayLsb;
+
+public class TopDownTraversalTest {
+
+    @Test
+    public void sameIntervalsAsBottomUp() {
+        for (int n = 1; n < 200; n += 7) {
+            check(SuffixArraysTest.random(n, 3, 4));
+            check(SuffixArraysTest.random(n, 2, 1));
+            check(SuffixArraysTest.random(n, 1, 1));
+        }
+        check(SuffixArraysTest.random(5000, 256, 1));
+        check(SuffixArraysTest.random(5000, 4, 300));
+    }
+
+    private static void check(ByteArrayAsLongArrayAdapter text) {
+        long n = text.length();
+        LongArray sa = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        Sais.suffixsort(text, sa, n, 256);
+        LongArray lcp = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        SuffixArrays.computeLCP(text, 0, n, sa, lcp, OffheapByteArrayAsFiveByteLongArrayLsb::new);
+        LongArray cld = new OffheapByteArrayAsFiveByteLongArrayLsb(n);
+        ChildTable.build(lcp, cld);
+        TopDownTraversal traversal = new TopDownTraversal(text, sa, lcp, cld);
+
+        // the same intervals, in a different order
+        // (bottom-up traversal reports the root with lcp 0, even if all suffixes start with the same symbol)
+        long rootValue = traversal.root().value;
+        List<String> expected = new ArrayList<>();
+        new BottomUpTraversal(sa, lcp).run((value, from, to, children) -> {
+            if (from < to && (value > 0 || rootValue == 0)) {
+                expected.add(value + " " + from + " " + to + " " + children);
+            }
+        });
+        List<String> actual = new ArrayList<>();
+        traversal.visit(interval -> {
+            long[] children = new long[1];
+            long[] next = {interval.from};
+            traversal.children(interval, child -> {
+                Assert.assertEquals(next[0], child.from);
+                Assert.assertTrue(child.isLeaf() ? child.value >= interval.value : child.value > interval.value);
+                next[0] = child.to + 1;
+                if (!child.isLeaf()) {
+                    children[0]++;
+                }
+            });
+            Assert.assertEquals(interval.to + 1, next[0]);
+            actual.add(interval.value + " " + interval.from + " " + interval.to + " " + children[0]);
+            return true;
+        });
+        actual.sort(null);
+        expected.sort(null);
+        Assert.assertEquals(expected, actual);
+
+        // patterns: substrings of text, and random
+        Random random = new Random(n);
+        for (int q = 0; q < 50; q++) {
+            long start = random.nextInt((int) n);
+            long length = 1 + random.nextInt((int) Math.min(n - start, 20));
+            LongArray pattern = new OffheapByteArrayAsFiveByteLongArrayLsb(length);
+            for (long i = 0; i < length; i++) {
+                pattern.set(i, q % 2 == 0 ? text.get(start + i) : random.nextInt(4));
+            }
+            LcpInterval found = traversal.find(pattern, length);
+            long first = -1;
+            long last = -1;
+            for (long i = 0; i < n; i++) {
+                if (startsWith(text, sa.get(i), pattern, length)) {
+                    first = first == -1 ? i : first;
+                    last = i;
+                }
+            }
+            if (first == -1) {
+                Assert.assertNull(found);
+            } else {
+                Assert.assertEquals(first, found.from);
+                Assert.assertEquals(last, found.to);
+                Assert.assertTrue(found.value >= length);
+            }
+            pattern.close();
+        }
+        sa.close();
+        lcp.close();
+        cld.close();
+        text.close();
+    }
+
+    private static boolean startsWith(LongArray text, long position, LongArray pattern, long length) {
+        for (long i = 0; i < length; i++) {
+            if (position + i >= text.length() || text.get(position + i) != pattern.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}